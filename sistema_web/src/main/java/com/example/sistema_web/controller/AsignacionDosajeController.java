@@ -1,7 +1,11 @@
 package com.example.sistema_web.controller;
 
 import com.example.sistema_web.dto.AsignacionDosajeDTO;
+import com.example.sistema_web.dto.FiltroListadoDTO;
+import com.example.sistema_web.dto.AsignacionDosajeResumenDTO;
+import com.example.sistema_web.dto.PaginaDTO;
 import com.example.sistema_web.service.AsignacionDosajeService;
+import com.example.sistema_web.word.ProcesadorDocumentos;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -13,10 +17,12 @@ import java.util.List;
 @RequiredArgsConstructor
 public class AsignacionDosajeController {
     private final AsignacionDosajeService service;
+    // Crear y actualizar reescriben el Word del documento asociado
+    private final ProcesadorDocumentos procesadorDocumentos;
 
     @PostMapping
     public ResponseEntity<AsignacionDosajeDTO> crear(@RequestBody AsignacionDosajeDTO dto) {
-        return ResponseEntity.ok(service.crear(dto));
+        return ResponseEntity.ok(procesadorDocumentos.ejecutar("nueva asignación dosaje", () -> service.crear(dto)));
     }
 
     @GetMapping("/{id}")
@@ -25,13 +31,20 @@ public class AsignacionDosajeController {
     }
 
     @GetMapping
-    public ResponseEntity<List<AsignacionDosajeDTO>> listar() {
+    public ResponseEntity<List<AsignacionDosajeResumenDTO>> listar() {
         return ResponseEntity.ok(service.listar());
     }
 
+    // Bandeja paginada: mismos filtros que /api/documentos/paginado, más ?estado=
+    @GetMapping("/paginado")
+    public ResponseEntity<PaginaDTO<AsignacionDosajeResumenDTO>> listarPaginado(FiltroListadoDTO filtro) {
+        return ResponseEntity.ok(service.listarPaginado(filtro));
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<AsignacionDosajeDTO> actualizar(@PathVariable Long id, @RequestBody AsignacionDosajeDTO dto) {
-        return ResponseEntity.ok(service.actualizar(id, dto));
+        return ResponseEntity.ok(procesadorDocumentos.ejecutar("asignación dosaje " + id,
+                () -> service.actualizar(id, dto)));
     }
 
     @DeleteMapping("/{id}")
@@ -1,7 +1,11 @@
 package com.example.sistema_web.controller;
 
 import com.example.sistema_web.dto.AsignacionToxicologiaDTO;
+import com.example.sistema_web.dto.FiltroListadoDTO;
+import com.example.sistema_web.dto.AsignacionToxicologiaResumenDTO;
+import com.example.sistema_web.dto.PaginaDTO;
 import com.example.sistema_web.service.AsignacionToxicologiaService;
+import com.example.sistema_web.word.ProcesadorDocumentos;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -14,10 +18,12 @@ import java.util.List;
 public class AsignacionToxicologiaController {
 
     private final AsignacionToxicologiaService service;
+    // Crear y actualizar reescriben el Word del documento asociado
+    private final ProcesadorDocumentos procesadorDocumentos;
 
     @PostMapping
     public ResponseEntity<AsignacionToxicologiaDTO> crear(@RequestBody AsignacionToxicologiaDTO dto) {
-        return ResponseEntity.ok(service.crear(dto));
+        return ResponseEntity.ok(procesadorDocumentos.ejecutar("nueva asignación toxicología", () -> service.crear(dto)));
     }
 
     @GetMapping("/{id}")
@@ -26,13 +32,19 @@ public class AsignacionToxicologiaController {
     }
 
     @GetMapping
-    public ResponseEntity<List<AsignacionToxicologiaDTO>> listar() {
+    public ResponseEntity<List<AsignacionToxicologiaResumenDTO>> listar() {
         return ResponseEntity.ok(service.listar());
     }
 
+    @GetMapping("/paginado")
+    public ResponseEntity<PaginaDTO<AsignacionToxicologiaResumenDTO>> listarPaginado(FiltroListadoDTO filtro) {
+        return ResponseEntity.ok(service.listarPaginado(filtro));
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<AsignacionToxicologiaDTO> actualizar(@PathVariable Long id, @RequestBody AsignacionToxicologiaDTO dto) {
-        return ResponseEntity.ok(service.actualizar(id, dto));
+        return ResponseEntity.ok(procesadorDocumentos.ejecutar("asignación toxicología " + id,
+                () -> service.actualizar(id, dto)));
     }
 
     @DeleteMapping("/{id}")
@@ -0,0 +1,36 @@
+package com.example.sistema_web.controller;
+
+import com.example.sistema_web.service.ArchivoDescarga;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+
+// Respuesta común de los endpoints /{id}/download (usados por OnlyOffice y por el navegador)
+final class DescargaWord {
+
+    static final MediaType DOCX =
+            MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.wordprocessingml.document");
+
+    private DescargaWord() {
+    }
+
+    // El cuerpo se copia desde el almacenamiento al escribir la respuesta. Con el ETag fuerte (hash del contenido)
+    // Spring contesta 304 ante un If-None-Match que coincide y 206 cuando llega un header Range.
+    static ResponseEntity<Resource> responder(ArchivoDescarga archivo, String nombreArchivo) {
+        ResponseEntity.BodyBuilder respuesta = ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + nombreArchivo + "\"")
+                .eTag("\"" + archivo.hash() + "\"")
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .contentType(DOCX);
+        try {
+            respuesta.lastModified(archivo.recurso().lastModified());
+        } catch (IOException e) {
+            // Sin fecha de modificación el ETag sigue siendo suficiente para revalidar
+        }
+        return respuesta.body(archivo.recurso());
+    }
+}
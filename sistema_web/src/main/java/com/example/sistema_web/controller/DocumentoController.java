@@ -2,20 +2,31 @@ package com.example.sistema_web.controller;
 
 import com.example.sistema_web.config.JwtAuthFilter;
 import com.example.sistema_web.dto.DocumentoDTO;
+import com.example.sistema_web.dto.FiltroListadoDTO;
+import com.example.sistema_web.dto.DocumentoResumenDTO;
+import com.example.sistema_web.dto.PaginaDTO;
+import com.example.sistema_web.onlyoffice.CallbackPipeline;
+import com.example.sistema_web.service.ArchivoDescarga;
 import com.example.sistema_web.service.DocumentoService;
+import com.example.sistema_web.service.ExportacionDocumentosService;
+import com.example.sistema_web.word.ProcesadorDocumentos;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/documentos")
@@ -24,6 +35,9 @@ import java.util.Map;
 public class DocumentoController {
 
     private final DocumentoService service;
+    private final CallbackPipeline callbackPipeline;
+    private final ProcesadorDocumentos procesadorDocumentos;
+    private final ExportacionDocumentosService exportacionService;
     // ✅ 1. CREAR NUEVO (Asignando el empleado de inmediato)
     @PostMapping("/nuevo")
     public ResponseEntity<Long> iniciarNuevoDocumento() {
@@ -48,8 +62,9 @@ public class DocumentoController {
             return ResponseEntity.notFound().build();
         }
 
-        // 1. Obtener nombre dinámico y ID del empleado actual
+        // 1. Obtener nombre dinámico, ID del empleado actual y versión del contenido
         String nombreArchivo = service.obtenerNombreSugerido(id);
+        ArchivoDescarga archivo = service.obtenerArchivo(id);
         Long empleadoIdActual = JwtAuthFilter.getCurrentEmpleadoId();
 
         // 2. Configuración del Objeto Document
@@ -58,7 +73,8 @@ public class DocumentoController {
 
         Map<String, Object> document = new HashMap<>();
         document.put("fileType", "docx");
-        document.put("key", "doc-" + id + "-" + System.currentTimeMillis());
+        // La clave solo cambia cuando cambia el contenido, así OnlyOffice reutiliza lo que ya tiene en caché
+        document.put("key", "doc-" + id + "-" + archivo.version());
         document.put("title", nombreArchivo);
         document.put("url", "http://host.docker.internal:8080/api/documentos/" + id + "/download");
 
@@ -96,13 +112,24 @@ public class DocumentoController {
 
     @GetMapping("/{id}/download")
     public ResponseEntity<Resource> downloadDocumento(@PathVariable Long id) {
-        byte[] data = service.obtenerContenidoArchivo(id);
-        ByteArrayResource resource = new ByteArrayResource(data);
+        return DescargaWord.responder(service.obtenerArchivo(id), "documento.docx");
+    }
+
+    // ZIP con los Word de varios documentos (por ids o por rango de fecha de ingreso), sus oficios y un manifest.csv
+    @GetMapping("/export.zip")
+    public ResponseEntity<StreamingResponseBody> exportarZip(
+            @RequestParam(required = false) List<Long> ids,
+            @RequestParam(name = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(name = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta) {
+
+        // La selección se arma acá, con el usuario de la petición; el cuerpo se escribe después en otro hilo
+        ExportacionDocumentosService.Exportacion exportacion = exportacionService.preparar(ids, desde, hasta);
+        StreamingResponseBody cuerpo = salida -> exportacionService.escribir(exportacion, salida);
+
         return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"documento.docx\"")
-                .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.wordprocessingml.document"))
-                .contentLength(data.length)
-                .body(resource);
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"documentos.zip\"")
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .body(cuerpo);
     }
 
     @PostMapping("/{id}/save-callback")
@@ -116,21 +143,23 @@ public class DocumentoController {
         // 👇 IMPRIMIR EL STATUS PARA DEPURAR
         System.out.println("📨 Callback recibido para ID " + id + " | Status: " + status);
 
+        boolean encolado = true;
         // ✅ CORRECCIÓN: Aceptamos Status 6 (Force Save) Y Status 2 (Cierre del editor)
         if (status != null && (status == 2 || status == 6)) {
             String urlDescarga = (String) payload.get("url");
 
             // Solo intentamos guardar si hay una URL de descarga válida
             if (urlDescarga != null && !urlDescarga.isEmpty()) {
-                System.out.println("💾 Guardando cambios (Status " + status + ") para Doc ID: " + id);
-                service.actualizarDesdeUrlOnlyOffice(id, urlDescarga, empleadoId);
+                System.out.println("💾 Encolando guardado (Status " + status + ") para Doc ID: " + id);
+                encolado = callbackPipeline.encolar(service, id, urlDescarga, empleadoId);
             } else {
                 System.out.println("⚠️ Status " + status + " recibido pero sin URL de descarga (posiblemente sin cambios).");
             }
         }
 
         Map<String, Object> response = new HashMap<>();
-        response.put("error", 0);
+        // Se responde apenas queda encolado; si no hubo cupo, error 1 para que OnlyOffice no lo dé por guardado
+        response.put("error", encolado ? 0 : 1);
         return ResponseEntity.ok(response);
     }
 
@@ -139,9 +168,15 @@ public class DocumentoController {
         return ResponseEntity.ok(service.crear(dto));
     }
     @GetMapping
-    public ResponseEntity<List<DocumentoDTO>> listar() {
+    public ResponseEntity<List<DocumentoResumenDTO>> listar() {
         return ResponseEntity.ok(service.listar());
     }
+
+    // Listado por páginas: ?cursor=&limite=&dni=&desde=yyyy-MM-dd&hasta=yyyy-MM-dd&peritoId=
+    @GetMapping("/paginado")
+    public ResponseEntity<PaginaDTO<DocumentoResumenDTO>> listarPaginado(FiltroListadoDTO filtro) {
+        return ResponseEntity.ok(service.listarPaginado(filtro));
+    }
     @DeleteMapping("/{id}/cancelar")
     public ResponseEntity<Void> cancelarEdicion(@PathVariable Long id) {
         service.eliminar(id);
@@ -171,6 +206,8 @@ public class DocumentoController {
             service.uploadDocumento(id, contenido);
 
             return ResponseEntity.ok("✅ Archivo recibido y guardado en BD. Tamaño: " + contenido.length + " bytes.");
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode()).body("❌ Error al subir: " + e.getReason());
         } catch (Exception e) {
             return ResponseEntity.status(500).body("❌ Error al subir: " + e.getMessage());
         }
@@ -188,9 +225,37 @@ public class DocumentoController {
         String tag = payload.get("tag");   // Ej: "CUANTITATIVO"
         String valor = payload.get("valor"); // Ej: "0.55"
 
-        service.actualizarTagEnWord(id, tag, valor);
+        procesadorDocumentos.ejecutar("tag " + tag + " del documento " + id,
+                () -> service.actualizarTagEnWord(id, tag, valor));
 
         return ResponseEntity.ok(Map.of("mensaje", "Word actualizado correctamente"));
     }
 
+    // Varios campos en una sola edición del Word: {"CUANTITATIVO": "0.55", "DNI": "12345678", ...}
+    @PostMapping("/{id}/actualizar-tags")
+    public ResponseEntity<?> actualizarTags(
+            @PathVariable Long id,
+            @RequestBody Map<String, String> campos) {
+
+        if (campos == null || campos.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("mensaje", "No se enviaron campos para actualizar"));
+        }
+        Set<String> actualizados = procesadorDocumentos.ejecutar("campos del documento " + id,
+                () -> service.actualizarCamposEnWord(id, campos));
+        List<String> noEncontrados = campos.keySet().stream()
+                .filter(tag -> tag == null || !actualizados.contains(tag.trim()))
+                .toList();
+
+        return ResponseEntity.ok(Map.of(
+                "mensaje", "Word actualizado correctamente",
+                "actualizados", actualizados,
+                "noEncontrados", noEncontrados));
+    }
+
+    // Cupo y cola del procesamiento de Word (todas las ediciones con POI / XDocReport pasan por ahí)
+    @GetMapping("/procesamiento")
+    public ResponseEntity<Map<String, Object>> estadoProcesamiento() {
+        return ResponseEntity.ok(procesadorDocumentos.estado());
+    }
+
 }
\ No newline at end of file
@@ -1,16 +1,21 @@
 package com.example.sistema_web.controller;
 import com.example.sistema_web.config.JwtAuthFilter;
 import com.example.sistema_web.dto.OficioDosajeDTO;
+import com.example.sistema_web.dto.GeneracionOficiosDTO;
+import com.example.sistema_web.dto.ResultadoOficioMasivoDTO;
+import com.example.sistema_web.dto.FiltroListadoDTO;
+import com.example.sistema_web.dto.OficioDosajeResumenDTO;
+import com.example.sistema_web.dto.PaginaDTO;
+import com.example.sistema_web.onlyoffice.CallbackPipeline;
 import com.example.sistema_web.service.OficioDosajeService;
+import com.example.sistema_web.word.ProcesadorDocumentos;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -22,6 +27,8 @@ import java.util.Map;
 public class OficioDosajeController {
 
     private final OficioDosajeService service;
+    private final CallbackPipeline callbackPipeline;
+    private final ProcesadorDocumentos procesadorDocumentos;
    // private static final String DOCKER_HOST = "spring-boot-container";
     // 1. Crear Oficio
     @PostMapping("/nuevo")
@@ -49,8 +56,8 @@ public class OficioDosajeController {
 
         Map<String, Object> document = new HashMap<>();
         document.put("fileType", "docx");
-        // ✅ Key dinámica para evitar caché
-        document.put("key", "oficio-" + id + "-" + System.currentTimeMillis());
+        // ✅ Key según la versión del contenido: solo cambia cuando se guarda un archivo nuevo
+        document.put("key", "oficio-" + id + "-" + service.obtenerArchivo(id).version());
         document.put("title", "Oficio_" + id + ".docx");
         document.put("url", "http://host.docker.internal:8080/api/oficio-dosaje/" + id + "/download");
 
@@ -73,14 +80,7 @@ public class OficioDosajeController {
     // 3. Descargar archivo (Usado por OnlyOffice y el usuario)
     @GetMapping("/{id}/download")
     public ResponseEntity<Resource> downloadOficioDosaje(@PathVariable Long id) {
-        byte[] data = service.obtenerContenidoArchivo(id);
-        ByteArrayResource resource = new ByteArrayResource(data);
-
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"oficio_dosaje.docx\"")
-                .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.wordprocessingml.document"))
-                .contentLength(data.length)
-                .body(resource);
+        return DescargaWord.responder(service.obtenerArchivo(id), "oficio_dosaje.docx");
     }
 
     // 4. Callback de Guardado (OnlyOffice)
@@ -95,21 +95,22 @@ public class OficioDosajeController {
         // 👇 IMPRIMIR EL STATUS PARA DEPURAR
         System.out.println("📨 Callback recibido para ID " + id + " | Status: " + status);
 
+        boolean encolado = true;
         // ✅ CORRECCIÓN: Aceptamos Status 6 (Force Save) Y Status 2 (Cierre del editor)
         if (status != null && (status == 2 || status == 6)) {
             String urlDescarga = (String) payload.get("url");
 
             // Solo intentamos guardar si hay una URL de descarga válida
             if (urlDescarga != null && !urlDescarga.isEmpty()) {
-                System.out.println("💾 Guardando cambios (Status " + status + ") para Oficio ID: " + id);
-                service.actualizarDesdeUrlOnlyOffice(id, urlDescarga, documentoId);
+                System.out.println("💾 Encolando guardado (Status " + status + ") para Oficio ID: " + id);
+                encolado = callbackPipeline.encolar(service, id, urlDescarga, documentoId);
             } else {
                 System.out.println("⚠️ Status " + status + " recibido pero sin URL de descarga (posiblemente sin cambios).");
             }
         }
 
         Map<String, Object> response = new HashMap<>();
-        response.put("error", 0);
+        response.put("error", encolado ? 0 : 1);
         return ResponseEntity.ok(response);
     }
 
@@ -119,10 +120,15 @@ public class OficioDosajeController {
     }
 
     @GetMapping
-    public ResponseEntity<List<OficioDosajeDTO>> listar() {
+    public ResponseEntity<List<OficioDosajeResumenDTO>> listar() {
         return ResponseEntity.ok(service.listar());
     }
 
+    @GetMapping("/paginado")
+    public ResponseEntity<PaginaDTO<OficioDosajeResumenDTO>> listarPaginado(FiltroListadoDTO filtro) {
+        return ResponseEntity.ok(service.listarPaginado(filtro));
+    }
+
     @DeleteMapping("/{id}/cancelar")
     public ResponseEntity<Void> cancelarEdicion(@PathVariable Long id) {
         service.eliminar(id);
@@ -152,6 +158,8 @@ public class OficioDosajeController {
             service.uploadOficioDosaje(id, contenido);
 
             return ResponseEntity.ok("✅ Archivo recibido y guardado en BD. Tamaño: " + contenido.length + " bytes.");
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode()).body("❌ Error al subir: " + e.getReason());
         } catch (Exception e) {
             return ResponseEntity.status(500).body("❌ Error al subir: " + e.getMessage());
         }
@@ -170,7 +178,20 @@ public class OficioDosajeController {
     @PostMapping("/{id}/sincronizar")
     public ResponseEntity<?> sincronizar(@PathVariable Long id) {
         System.out.println("🔄 Solicitud de sincronización recibida para ID: " + id);
-        service.sincronizarDatosAlWord(id);
+        procesadorDocumentos.ejecutar("sincronizar oficio dosaje " + id, () -> service.sincronizarDatosAlWord(id));
         return ResponseEntity.ok(Map.of("mensaje", "Sincronización completada"));
     }
-}
\ No newline at end of file
+
+    // Un oficio por cada documento de la lista, con la misma cabecera (fecha, nro, grado, responsable)
+    @PostMapping("/masivo")
+    public ResponseEntity<?> generarMasivo(@RequestBody GeneracionOficiosDTO cabecera) {
+        List<ResultadoOficioMasivoDTO> resultados = service.generarMasivo(cabecera);
+        long exitosos = resultados.stream().filter(r -> r.error() == null).count();
+        System.out.println("📚 Generación masiva de oficio dosaje: " + exitosos + "/" + resultados.size() + " creados");
+        return ResponseEntity.ok(Map.of(
+                "total", resultados.size(),
+                "exitosos", exitosos,
+                "fallidos", resultados.size() - exitosos,
+                "resultados", resultados));
+    }
+}
@@ -1,15 +1,20 @@
 package com.example.sistema_web.controller;
 import com.example.sistema_web.dto.OficioToxicologiaDTO;
+import com.example.sistema_web.dto.GeneracionOficiosDTO;
+import com.example.sistema_web.dto.ResultadoOficioMasivoDTO;
+import com.example.sistema_web.dto.FiltroListadoDTO;
+import com.example.sistema_web.dto.OficioToxicologiaResumenDTO;
+import com.example.sistema_web.dto.PaginaDTO;
+import com.example.sistema_web.onlyoffice.CallbackPipeline;
 import com.example.sistema_web.service.OficioToxicologiaService;
+import com.example.sistema_web.word.ProcesadorDocumentos;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.util.HashMap;
 import java.util.List;
@@ -21,6 +26,8 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class OficioToxicologiaController {
     private final OficioToxicologiaService service;
+    private final CallbackPipeline callbackPipeline;
+    private final ProcesadorDocumentos procesadorDocumentos;
     // private static final String DOCKER_HOST = "spring-boot-container";
     // 1. Crear Oficio
     @PostMapping("/nuevo")
@@ -46,8 +53,8 @@ public class OficioToxicologiaController {
 
         Map<String, Object> document = new HashMap<>();
         document.put("fileType", "docx");
-        // ✅ Key dinámica para evitar caché
-        document.put("key", "oficio-" + id + "-" + System.currentTimeMillis());
+        // ✅ Key según la versión del contenido: solo cambia cuando se guarda un archivo nuevo
+        document.put("key", "oficio-" + id + "-" + service.obtenerArchivo(id).version());
         document.put("title", "Oficio_" + id + ".docx");
         document.put("url", "http://host.docker.internal:8080/api/oficio-toxicologia/" + id + "/download");
 
@@ -70,14 +77,7 @@ public class OficioToxicologiaController {
     // 3. Descargar archivo (Usado por OnlyOffice y el usuario)
     @GetMapping("/{id}/download")
     public ResponseEntity<Resource> downloadOficioToxicologia(@PathVariable Long id) {
-        byte[] data = service.obtenerContenidoArchivo(id);
-        ByteArrayResource resource = new ByteArrayResource(data);
-
-        return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"oficio_toxicologia.docx\"")
-                .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.wordprocessingml.document"))
-                .contentLength(data.length)
-                .body(resource);
+        return DescargaWord.responder(service.obtenerArchivo(id), "oficio_toxicologia.docx");
     }
 
     // 4. Callback de Guardado (OnlyOffice)
@@ -92,21 +92,22 @@ public class OficioToxicologiaController {
         // 👇 IMPRIMIR EL STATUS PARA DEPURAR
         System.out.println("📨 Callback recibido para ID " + id + " | Status: " + status);
 
+        boolean encolado = true;
         // ✅ CORRECCIÓN: Aceptamos Status 6 (Force Save) Y Status 2 (Cierre del editor)
         if (status != null && (status == 2 || status == 6)) {
             String urlDescarga = (String) payload.get("url");
 
             // Solo intentamos guardar si hay una URL de descarga válida
             if (urlDescarga != null && !urlDescarga.isEmpty()) {
-                System.out.println("💾 Guardando cambios (Status " + status + ") para Oficio ID: " + id);
-                service.actualizarDesdeUrlOnlyOffice(id, urlDescarga, documentoId);
+                System.out.println("💾 Encolando guardado (Status " + status + ") para Oficio ID: " + id);
+                encolado = callbackPipeline.encolar(service, id, urlDescarga, documentoId);
             } else {
                 System.out.println("⚠️ Status " + status + " recibido pero sin URL de descarga (posiblemente sin cambios).");
             }
         }
 
         Map<String, Object> response = new HashMap<>();
-        response.put("error", 0);
+        response.put("error", encolado ? 0 : 1);
         return ResponseEntity.ok(response);
     }
 
@@ -116,10 +117,15 @@ public class OficioToxicologiaController {
     }
 
     @GetMapping
-    public ResponseEntity<List<OficioToxicologiaDTO>> listar() {
+    public ResponseEntity<List<OficioToxicologiaResumenDTO>> listar() {
         return ResponseEntity.ok(service.listar());
     }
 
+    @GetMapping("/paginado")
+    public ResponseEntity<PaginaDTO<OficioToxicologiaResumenDTO>> listarPaginado(FiltroListadoDTO filtro) {
+        return ResponseEntity.ok(service.listarPaginado(filtro));
+    }
+
     @DeleteMapping("/{id}/cancelar")
     public ResponseEntity<Void> cancelarEdicion(@PathVariable Long id) {
         service.eliminar(id);
@@ -149,6 +155,8 @@ public class OficioToxicologiaController {
             service.uploadOficioToxicologia(id, contenido);
 
             return ResponseEntity.ok("✅ Archivo recibido y guardado en BD. Tamaño: " + contenido.length + " bytes.");
+        } catch (ResponseStatusException e) {
+            return ResponseEntity.status(e.getStatusCode()).body("❌ Error al subir: " + e.getReason());
         } catch (Exception e) {
             return ResponseEntity.status(500).body("❌ Error al subir: " + e.getMessage());
         }
@@ -167,7 +175,20 @@ public class OficioToxicologiaController {
     @PostMapping("/{id}/sincronizar")
     public ResponseEntity<?> sincronizar(@PathVariable Long id) {
         System.out.println("🔄 Solicitud de sincronización recibida para ID: " + id);
-        service.sincronizarDatosAlWord(id);
+        procesadorDocumentos.ejecutar("sincronizar oficio toxicología " + id, () -> service.sincronizarDatosAlWord(id));
         return ResponseEntity.ok(Map.of("mensaje", "Sincronización completada"));
     }
+
+    // Un oficio por cada documento de la lista, con la misma cabecera (fecha, nro, grado, responsable)
+    @PostMapping("/masivo")
+    public ResponseEntity<?> generarMasivo(@RequestBody GeneracionOficiosDTO cabecera) {
+        List<ResultadoOficioMasivoDTO> resultados = service.generarMasivo(cabecera);
+        long exitosos = resultados.stream().filter(r -> r.error() == null).count();
+        System.out.println("📚 Generación masiva de oficio toxicología: " + exitosos + "/" + resultados.size() + " creados");
+        return ResponseEntity.ok(Map.of(
+                "total", resultados.size(),
+                "exitosos", exitosos,
+                "fallidos", resultados.size() - exitosos,
+                "resultados", resultados));
+    }
 }
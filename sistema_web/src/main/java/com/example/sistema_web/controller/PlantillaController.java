@@ -0,0 +1,23 @@
+package com.example.sistema_web.controller;
+
+import com.example.sistema_web.plantilla.TemplateRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/plantillas")
+@CrossOrigin(origins = "*")
+@RequiredArgsConstructor
+public class PlantillaController {
+
+    private final TemplateRegistry templateRegistry;
+
+    // Hash vigente de cada plantilla (cambia cuando se recarga un override externo)
+    @GetMapping("/versiones")
+    public ResponseEntity<Map<String, String>> versiones() {
+        return ResponseEntity.ok(templateRegistry.versiones());
+    }
+}
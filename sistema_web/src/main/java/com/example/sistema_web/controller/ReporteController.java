@@ -2,16 +2,24 @@
 package com.example.sistema_web.controller;
 
 import com.example.sistema_web.dto.*;
+import com.example.sistema_web.service.CacheDashboard;
 import com.example.sistema_web.service.ReporteService;
+import com.example.sistema_web.service.ResumenDiarioService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/reportes")
@@ -20,6 +28,8 @@ import java.util.List;
 public class ReporteController {
 
     private final ReporteService reporteService;
+    private final ResumenDiarioService resumenDiarioService;
+    private final CacheDashboard cacheDashboard;
 
     // 📊 Métricas generales
     @GetMapping("/metricas")
@@ -30,10 +40,13 @@ public class ReporteController {
         return ResponseEntity.ok(metrica);
     }
 
-    // 📊 Análisis por sustancia
+    // 📊 Análisis por sustancia (positivos / negativos), opcionalmente por rango de ingreso y área
     @GetMapping("/analisis/sustancia")
-    public ResponseEntity<List<ReporteDTO.SustanciaDTO>> getAnalisisPorSustancia() {
-        return ResponseEntity.ok(reporteService.getAnalisisPorSustancia());
+    public ResponseEntity<List<ReporteDTO.SustanciaDTO>> getAnalisisPorSustancia(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) String area) {
+        return ResponseEntity.ok(reporteService.getAnalisisPorSustancia(desde, hasta, area));
     }
 
     // 📊 Estados (Positivo/Negativo)
@@ -48,23 +61,70 @@ public class ReporteController {
         return ResponseEntity.ok(reporteService.getDocumentosPorDia());
     }
 
+    // 📊 Actividad (notificaciones) en un rango, por día, semana o mes; períodos sin actividad en 0
+    @GetMapping("/actividad")
+    public ResponseEntity<List<ReporteDTO.DocumentoDiaDTO>> getActividad(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = "dia") String granularidad) {
+        return ResponseEntity.ok(reporteService.getActividad(desde, hasta, granularidad));
+    }
+
     // 📊 Productividad por empleado
     @GetMapping("/empleados/productividad")
     public ResponseEntity<List<ReporteDTO.EmpleadoDTO>> getEmpleadosProductividad() {
         return ResponseEntity.ok(reporteService.getEmpleadosProductividad());
     }
 
-    // 📥 Exportación
+    // 📊 Asignaciones (dosaje + toxicología) por área
+    @GetMapping("/asignaciones/area")
+    public ResponseEntity<List<ReporteDTO.AreaDTO>> getAsignacionesPorArea() {
+        return ResponseEntity.ok(reporteService.getAsignacionesPorArea());
+    }
+
+    // 📊 Asignaciones de un perito en un rango (por fecha de ingreso del documento), por día, semana o mes
+    @GetMapping("/asignaciones/perito/{peritoId}")
+    public ResponseEntity<List<ReporteDTO.DocumentoDiaDTO>> getAsignacionesPorPerito(
+            @PathVariable Long peritoId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(defaultValue = "dia") String granularidad) {
+        return ResponseEntity.ok(reporteService.getAsignacionesPorPerito(peritoId, desde, hasta, granularidad));
+    }
+
+    // 🔧 Recalcula el resumen diario del dashboard desde las tablas de origen
+    @PostMapping("/resumen/reconstruir")
+    public ResponseEntity<Map<String, Object>> reconstruirResumen() {
+        int filas = resumenDiarioService.reconstruir();
+        return ResponseEntity.ok(Map.of("filas", filas));
+    }
+
+    // 🗃️ Aciertos / fallos de la cache de reportes y gráficos
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, Object>> getEstadisticasCache() {
+        return ResponseEntity.ok(cacheDashboard.estadisticas());
+    }
+
+    @DeleteMapping("/cache")
+    public ResponseEntity<Void> limpiarCache() {
+        cacheDashboard.limpiar();
+        return ResponseEntity.noContent().build();
+    }
+
+    // 📥 Exportación (mes = 0 para el año completo). El Excel se escribe directo en la respuesta mientras se lee la base
     @GetMapping(value = "/excel", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
-    public ResponseEntity<byte[]> descargarExcel(
+    public ResponseEntity<StreamingResponseBody> descargarExcel(
             @RequestParam(defaultValue = "12") int mes,
-            @RequestParam(defaultValue = "2025") int año) throws IOException {
+            @RequestParam(defaultValue = "2025") int año) {
 
-        byte[] excelData = reporteService.generarExcel(mes, año);
+        if (mes < 0 || mes > 12) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Mes inválido: " + mes);
+        }
         HttpHeaders headers = new HttpHeaders();
         headers.setContentDispositionFormData("attachment", "reporte_" + año + "_" + mes + ".xlsx");
         headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
-        return new ResponseEntity<>(excelData, headers, HttpStatus.OK);
+        StreamingResponseBody cuerpo = salida -> reporteService.escribirExcel(mes, año, salida);
+        return new ResponseEntity<>(cuerpo, headers, HttpStatus.OK);
     }
 
     @GetMapping(value = "/pdf", produces = MediaType.APPLICATION_PDF_VALUE)
@@ -78,8 +138,13 @@ public class ReporteController {
         headers.setContentType(MediaType.APPLICATION_PDF);
         return new ResponseEntity<>(pdfData, headers, HttpStatus.OK);
     }
+    // 📊 Histograma del valor cualitativo (dosaje); bordes=1,2 equivale a los rangos de siempre
     @GetMapping("/rangos/cualitativo")
-    public ResponseEntity<List<ReporteDTO.RangoCualitativoDTO>> getRangosCualitativos() {
-        return ResponseEntity.ok(reporteService.getRangosCualitativos());
+    public ResponseEntity<List<ReporteDTO.RangoCualitativoDTO>> getRangosCualitativos(
+            @RequestParam(defaultValue = "1,2") List<BigDecimal> bordes,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+            @RequestParam(required = false) Long peritoId) {
+        return ResponseEntity.ok(reporteService.getRangosCualitativos(bordes, desde, hasta, peritoId));
     }
 }
\ No newline at end of file
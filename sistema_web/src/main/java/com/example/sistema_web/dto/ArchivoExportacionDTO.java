@@ -0,0 +1,9 @@
+package com.example.sistema_web.dto;
+
+// Oficio a incluir en la exportación: solo lo necesario para ubicar su Word en el BlobStore
+public record ArchivoExportacionDTO(
+        Long id,
+        Long documentoId,
+        String archivoHash
+) {
+}
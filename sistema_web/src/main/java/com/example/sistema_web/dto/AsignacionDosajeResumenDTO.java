@@ -0,0 +1,11 @@
+package com.example.sistema_web.dto;
+
+public record AsignacionDosajeResumenDTO(
+        Long id,
+        String area,
+        String cualitativo,
+        String estado,
+        Long documentoId,
+        Long empleadoId
+) {
+}
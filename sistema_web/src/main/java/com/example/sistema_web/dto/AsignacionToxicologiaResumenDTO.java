@@ -0,0 +1,29 @@
+package com.example.sistema_web.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public record AsignacionToxicologiaResumenDTO(
+        Long id,
+        String area,
+        String estado,
+        Long documentoId,
+        Long empleadoId,
+        ToxicologiaResultadoDTO resultados
+) {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // Usado por la consulta JPQL: el resultado llega como el JSON guardado en la columna
+    public AsignacionToxicologiaResumenDTO(Long id, String area, String estado, Long documentoId, Long empleadoId,
+                                           String resultadoToxicologico) {
+        this(id, area, estado, documentoId, empleadoId, leerResultados(resultadoToxicologico));
+    }
+
+    private static ToxicologiaResultadoDTO leerResultados(String json) {
+        if (json == null) return new ToxicologiaResultadoDTO();
+        try {
+            return MAPPER.readValue(json, ToxicologiaResultadoDTO.class);
+        } catch (Exception e) {
+            return new ToxicologiaResultadoDTO();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.sistema_web.dto;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 
 @Data
@@ -15,6 +16,8 @@ public class DocumentoDTO {
     private String procedencia;
     private String tipoMuestra;
     private String personaQueConduce;
+    // Solo de entrada: el contenido se descarga por /{id}/download, nunca viaja en el JSON
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private byte[] archivo;
     private Long empleadoId;
 }
\ No newline at end of file
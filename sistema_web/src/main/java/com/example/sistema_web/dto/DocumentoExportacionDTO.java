@@ -0,0 +1,22 @@
+package com.example.sistema_web.dto;
+
+import java.time.LocalDateTime;
+
+// Fila del manifest de la exportación ZIP: mismos datos que el resumen más la fecha y el hash del Word
+public record DocumentoExportacionDTO(
+        Long id,
+        String nombresyapellidos,
+        String dni,
+        String edad,
+        String cualitativo,
+        String cuantitativo,
+        String numeroInforme,
+        String nombreOficio,
+        String procedencia,
+        String tipoMuestra,
+        String personaQueConduce,
+        Long empleadoId,
+        LocalDateTime fechaIngreso,
+        String archivoHash
+) {
+}
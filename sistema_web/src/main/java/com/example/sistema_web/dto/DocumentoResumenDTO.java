@@ -0,0 +1,18 @@
+package com.example.sistema_web.dto;
+
+// Fila de la bandeja de documentos: solo columnas escalares, el Word se baja por /{id}/download
+public record DocumentoResumenDTO(
+        Long id,
+        String nombresyapellidos,
+        String dni,
+        String edad,
+        String cualitativo,
+        String cuantitativo,
+        String numeroInforme,
+        String nombreOficio,
+        String procedencia,
+        String tipoMuestra,
+        String personaQueConduce,
+        Long empleadoId
+) {
+}
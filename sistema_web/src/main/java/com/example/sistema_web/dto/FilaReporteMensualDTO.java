@@ -0,0 +1,23 @@
+package com.example.sistema_web.dto;
+
+import java.time.LocalDateTime;
+
+// Una fila del Excel mensual: la asignación (dosaje o toxicología) con los datos de su documento y el perito.
+// resultado es el cualitativo en dosaje y el JSON de sustancias en toxicología.
+public record FilaReporteMensualDTO(
+        String tipo,
+        Long asignacionId,
+        String area,
+        String estado,
+        String resultado,
+        Long documentoId,
+        LocalDateTime fechaIngreso,
+        String nombresyapellidos,
+        String dni,
+        String edad,
+        String tipoMuestra,
+        String numeroInforme,
+        String peritoNombre,
+        String peritoApellido
+) {
+}
@@ -0,0 +1,55 @@
+package com.example.sistema_web.dto;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Parámetros de los endpoints /paginado (todos opcionales, se reciben como query params).
+// Los rangos de edad y cuantitativo solo los usa el listado de documentos.
+public record FiltroListadoDTO(
+        Long cursor,
+        Integer limite,
+        String dni,
+        String estado,
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate desde,
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate hasta,
+        Long peritoId,
+        Integer edadMin,
+        Integer edadMax,
+        BigDecimal cuantitativoMin,
+        BigDecimal cuantitativoMax
+) {
+    public static final int LIMITE_POR_DEFECTO = 50;
+    public static final int LIMITE_MAXIMO = 200;
+
+    public int limiteEfectivo() {
+        if (limite == null || limite <= 0) return LIMITE_POR_DEFECTO;
+        return Math.min(limite, LIMITE_MAXIMO);
+    }
+
+    // Una fila más de las pedidas para saber si existe página siguiente sin hacer COUNT(*)
+    public Pageable ventana() {
+        return PageRequest.of(0, limiteEfectivo() + 1);
+    }
+
+    // Rango [desde 00:00, hasta+1 00:00) para comparar contra columnas de fecha y hora
+    public LocalDateTime desdeInicio() {
+        return desde != null ? desde.atStartOfDay() : null;
+    }
+
+    public LocalDateTime hastaFin() {
+        return hasta != null ? hasta.plusDays(1).atStartOfDay() : null;
+    }
+
+    public String dniNormalizado() {
+        return dni == null || dni.isBlank() ? null : dni.trim();
+    }
+
+    public String estadoNormalizado() {
+        return estado == null || estado.isBlank() ? null : estado.trim();
+    }
+}
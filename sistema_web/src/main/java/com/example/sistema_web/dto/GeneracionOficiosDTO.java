@@ -0,0 +1,15 @@
+package com.example.sistema_web.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+// Generación masiva: un oficio por documento, todos con la misma cabecera
+@Data
+public class GeneracionOficiosDTO {
+    private List<Long> documentoIds;
+    private String fecha;
+    private String nro_oficio;
+    private String gradoPNP;
+    private String nombresyapellidosPNP;
+}
@@ -2,6 +2,7 @@ package com.example.sistema_web.dto;
 import com.example.sistema_web.model.Empleado;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 @Data
 public class OficioToxicologiaDTO {
@@ -14,6 +15,7 @@ public class OficioToxicologiaDTO {
     @ManyToOne
     @JoinColumn(name = "emisor_id")
     private Empleado emisor;
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     private byte[] archivo;
     // ✅ Campos de la tabla Documentos (Inner Join)
     private String personaInvolucrada;
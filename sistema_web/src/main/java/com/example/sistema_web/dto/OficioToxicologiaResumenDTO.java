@@ -0,0 +1,17 @@
+package com.example.sistema_web.dto;
+
+// Proyección para el listado de oficios (sin archivo), con los datos del documento base
+public record OficioToxicologiaResumenDTO(
+        Long id,
+        String fecha,
+        String nro_oficio,
+        String gradoPNP,
+        String nombresyapellidosPNP,
+        Long documentoId,
+        String personaInvolucrada,
+        String dniInvolucrado,
+        String edadInvolucrado,
+        String tipoMuestra,
+        String nroInformeBase
+) {
+}
@@ -0,0 +1,19 @@
+package com.example.sistema_web.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+// Página de un listado por cursor: siguienteCursor es el id a enviar en la próxima petición (null = no hay más)
+public record PaginaDTO<T>(
+        List<T> items,
+        Long siguienteCursor
+) {
+    // Las consultas piden limite + 1 filas; si llega la fila extra, hay otra página después de la última devuelta
+    public static <T> PaginaDTO<T> de(List<T> filas, int limite, Function<T, Long> id) {
+        if (filas.size() <= limite) {
+            return new PaginaDTO<>(filas, null);
+        }
+        List<T> items = filas.subList(0, limite);
+        return new PaginaDTO<>(items, id.apply(items.get(limite - 1)));
+    }
+}
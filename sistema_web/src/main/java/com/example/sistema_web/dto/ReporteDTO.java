@@ -9,10 +9,17 @@ public class ReporteDTO {
     public static class SustanciaDTO {
         private String sustancia;
         private Long totalAnalisis;
+        private Long positivos;
+        private Long negativos;
         public SustanciaDTO(String sustancia, Long totalAnalisis) {
             this.sustancia = sustancia;
             this.totalAnalisis = totalAnalisis;
         }
+        public SustanciaDTO(String sustancia, long positivos, long negativos) {
+            this(sustancia, positivos + negativos);
+            this.positivos = positivos;
+            this.negativos = negativos;
+        }
     }
 
     @Data
@@ -47,6 +54,16 @@ public class ReporteDTO {
         }
     }
 
+    @Data
+    public static class AreaDTO {
+        private String area;
+        private Long total;
+        public AreaDTO(String area, Long total) {
+            this.area = area;
+            this.total = total;
+        }
+    }
+
     // ✅ NUEVA CLASE
     @Data
     public static class Metrica {
@@ -0,0 +1,9 @@
+package com.example.sistema_web.dto;
+
+// Resultado por documento de una generación masiva: oficioId si se creó, error si no
+public record ResultadoOficioMasivoDTO(
+        Long documentoId,
+        Long oficioId,
+        String error
+) {
+}
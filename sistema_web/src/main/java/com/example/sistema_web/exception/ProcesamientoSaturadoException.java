@@ -0,0 +1,15 @@
+package com.example.sistema_web.exception;
+
+public class ProcesamientoSaturadoException extends RuntimeException {
+
+    private final long reintentarEnSegundos;
+
+    public ProcesamientoSaturadoException(String message, long reintentarEnSegundos) {
+        super(message);
+        this.reintentarEnSegundos = reintentarEnSegundos;
+    }
+
+    public long getReintentarEnSegundos() {
+        return reintentarEnSegundos;
+    }
+}
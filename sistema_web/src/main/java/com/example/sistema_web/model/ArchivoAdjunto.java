@@ -0,0 +1,8 @@
+package com.example.sistema_web.model;
+
+// Entidades cuyo archivo Word vive en el BlobStore; la fila solo guarda el hash
+public interface ArchivoAdjunto {
+    Long getId();
+    String getArchivoHash();
+    void setArchivoHash(String archivoHash);
+}
@@ -3,8 +3,11 @@ package com.example.sistema_web.model;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.math.BigDecimal;
+
 @Entity
-@Table(name = "asignaciones_dosaje")
+@Table(name = "asignaciones_dosaje",
+        indexes = @Index(name = "idx_asig_dosaje_cualitativo_valor", columnList = "cualitativo_valor"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -17,6 +20,10 @@ public class AsignacionDosaje {
     private String cualitativo;
     private String estado;
 
+    // Copia numérica de cualitativo para histogramas y rangos en SQL; null si el texto no es un número
+    @Column(name = "cualitativo_valor", precision = 10, scale = 3)
+    private BigDecimal cualitativoValor;
+
     // 🔗 Relación con Documento
     @ManyToOne
     @JoinColumn(name = "documento_id", nullable = false)
@@ -29,4 +36,10 @@ public class AsignacionDosaje {
     @ManyToOne
     @JoinColumn(name = "emisor_id")
     private Empleado emisor;
-}
\ No newline at end of file
+
+    @PrePersist
+    @PreUpdate
+    void sincronizarCamposTipados() {
+        this.cualitativoValor = CamposTipados.decimal(cualitativo);
+    }
+}
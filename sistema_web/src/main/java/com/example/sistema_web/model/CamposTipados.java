@@ -0,0 +1,60 @@
+package com.example.sistema_web.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Conversión de los campos que el sistema guarda como texto libre a sus columnas tipadas (las que usan los
+// reportes y filtros). Lo que no se puede interpretar queda en null: el texto original sigue siendo la fuente.
+public final class CamposTipados {
+
+    // DECIMAL(10,3): siete dígitos enteros como máximo
+    private static final BigDecimal LIMITE_DECIMAL = new BigDecimal("10000000");
+
+    // "25", "25 años", "25 anos"
+    private static final Pattern EDAD = Pattern.compile("^(\\d{1,3})(\\s*a[ñn]os?)?$", Pattern.CASE_INSENSITIVE);
+
+    // yyyy-MM-dd es lo que envía el input date del frontend; dd/MM/yyyy aparece en datos cargados a mano
+    private static final List<DateTimeFormatter> FORMATOS_FECHA = List.of(
+            DateTimeFormatter.ISO_LOCAL_DATE,
+            DateTimeFormatter.ofPattern("dd/MM/uuuu"));
+
+    private CamposTipados() {
+    }
+
+    public static BigDecimal decimal(String texto) {
+        if (texto == null || texto.isBlank()) return null;
+        String numero = texto.trim();
+        // Coma decimal ("1,25") cuando no hay punto que la contradiga
+        if (numero.indexOf(',') == numero.lastIndexOf(',') && numero.indexOf('.') < 0) numero = numero.replace(',', '.');
+        try {
+            BigDecimal valor = new BigDecimal(numero).setScale(3, RoundingMode.HALF_UP);
+            return valor.abs().compareTo(LIMITE_DECIMAL) < 0 ? valor : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public static Integer edad(String texto) {
+        if (texto == null) return null;
+        Matcher m = EDAD.matcher(texto.trim());
+        return m.matches() ? Integer.valueOf(m.group(1)) : null;
+    }
+
+    public static LocalDate fecha(String texto) {
+        if (texto == null || texto.isBlank()) return null;
+        for (DateTimeFormatter formato : FORMATOS_FECHA) {
+            try {
+                return LocalDate.parse(texto.trim(), formato);
+            } catch (DateTimeParseException e) {
+                // se prueba el siguiente formato
+            }
+        }
+        return null;
+    }
+}
@@ -2,16 +2,27 @@ package com.example.sistema_web.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.DynamicUpdate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "documentos")
+@DynamicUpdate
+@Table(name = "documentos", indexes = {
+        @Index(name = "idx_documentos_dni", columnList = "dni"),
+        @Index(name = "idx_documentos_fecha_ingreso", columnList = "fecha_ingreso"),
+        @Index(name = "idx_documentos_edad_valor", columnList = "edad_valor"),
+        @Index(name = "idx_documentos_cuantitativo_valor", columnList = "cuantitativo_valor")
+})
 @Getter
 @Setter
 @ToString(exclude = "empleado")
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class Documento {
+public class Documento implements ArchivoAdjunto {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -26,10 +37,26 @@ public class Documento {
     private String procedencia;
     private String tipoMuestra;
     private String personaQueConduce;
-    @Lob
-    @Column(name = "archivo", columnDefinition = "LONGBLOB")
-    private byte[] archivo;
+    // Copias tipadas de edad y cuantitativo para filtros y rangos en SQL (null si el texto no se puede leer)
+    @Column(name = "edad_valor")
+    private Integer edadValor;
+    @Column(name = "cuantitativo_valor", precision = 10, scale = 3)
+    private BigDecimal cuantitativoValor;
+    // Lo usan los gráficos y el filtro por rango de fechas de los listados paginados
+    @CreationTimestamp
+    @Column(name = "fecha_ingreso", updatable = false)
+    private LocalDateTime fechaIngreso;
+    // SHA-256 del Word en el BlobStore (la antigua columna LONGBLOB "archivo" solo se lee para migrarla)
+    @Column(name = "archivo_hash", length = 64)
+    private String archivoHash;
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "empleado_id")
     private Empleado empleado;
-}
\ No newline at end of file
+
+    @PrePersist
+    @PreUpdate
+    void sincronizarCamposTipados() {
+        this.edadValor = CamposTipados.edad(edad);
+        this.cuantitativoValor = CamposTipados.decimal(cuantitativo);
+    }
+}
@@ -7,7 +7,8 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "notifications")
+@Table(name = "notifications",
+        indexes = @Index(name = "idx_notifications_created_at", columnList = "created_at"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -2,32 +2,49 @@ package com.example.sistema_web.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.DynamicUpdate;
+
+import java.time.LocalDate;
 
 @Entity
-@Table(name = "oficio_dosaje")
+@DynamicUpdate
+@Table(name = "oficio_dosaje",
+        indexes = @Index(name = "idx_oficio_dosaje_fecha_valor", columnList = "fecha_valor"))
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 @Getter
 @Setter
 @ToString(exclude = "documento")
-public class OficioDosaje {
+public class OficioDosaje implements ArchivoAdjunto {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     private String fecha;
+    // fecha como DATE: el filtro por rango de los listados compara contra esta columna
+    @Column(name = "fecha_valor")
+    private LocalDate fechaValor;
     private String nro_oficio;
     private String gradoPNP;
     private String nombresyapellidosPNP;
     @ManyToOne
     @JoinColumn(name = "emisor_id")
     private Empleado emisor;
-    @Lob
-    @Column(name = "archivo", columnDefinition = "LONGBLOB")
-    private byte[] archivo;
+    // Referencia al oficio en el BlobStore
+    @Column(name = "archivo_hash", length = 64)
+    private String archivoHash;
+    // Huella (datos + archivo) de la última sincronización con XDocReport
+    @Column(name = "huella_sincronizacion", length = 64)
+    private String huellaSincronizacion;
     // Relación con Documento
     @ManyToOne(fetch = FetchType.EAGER)
     @JoinColumn(name = "documento_id", nullable = false)
     private Documento documento;
-}
\ No newline at end of file
+
+    @PrePersist
+    @PreUpdate
+    void sincronizarCamposTipados() {
+        this.fechaValor = CamposTipados.fecha(fecha);
+    }
+}
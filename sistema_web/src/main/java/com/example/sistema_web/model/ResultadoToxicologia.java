@@ -0,0 +1,75 @@
+package com.example.sistema_web.model;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Una fila por sustancia analizada en una asignación de toxicología. Es la misma información que el JSON de
+// AsignacionToxicologia.resultadoToxicologico, pero en columnas indexadas para que los reportes agrupen sin LIKE.
+@Entity
+@Table(name = "resultados_toxicologia",
+        uniqueConstraints = @UniqueConstraint(name = "uk_resultado_tox_asignacion_sustancia",
+                columnNames = {"asignacion_id", "sustancia"}),
+        indexes = {
+                @Index(name = "idx_resultado_tox_sustancia", columnList = "sustancia, resultado, asignacion_id"),
+                @Index(name = "idx_resultado_tox_resultado", columnList = "resultado, asignacion_id")
+        })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ResultadoToxicologia {
+
+    public static final int MAX_SUSTANCIA = 40;
+    public static final int MAX_RESULTADO = 50;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Al borrar la asignación, la base de datos borra sus resultados
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "asignacion_id", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    @ToString.Exclude
+    private AsignacionToxicologia asignacion;
+
+    @Column(nullable = false, length = MAX_SUSTANCIA)
+    private String sustancia;
+
+    @Column(nullable = false, length = MAX_RESULTADO)
+    private String resultado;
+
+    // sustancia → resultado del JSON; las sustancias sin resultado no generan fila. Positivo y Negativo se guardan
+    // siempre así escritos ("POSITIVO", "positivo" → "Positivo") para que la tabla, el resumen y los reportes
+    // cuenten lo mismo; cualquier otro texto queda como vino
+    public static Map<String, String> leerJson(String json) {
+        Map<String, String> valores = new LinkedHashMap<>();
+        if (json == null || json.isBlank()) return valores;
+        try {
+            Map<String, Object> crudo = MAPPER.readValue(json, new TypeReference<LinkedHashMap<String, Object>>() { });
+            crudo.forEach((sustancia, valor) -> {
+                if (valor == null || valor.toString().isBlank() || sustancia.length() > MAX_SUSTANCIA) return;
+                String resultado = canonico(valor.toString().trim());
+                valores.put(sustancia, resultado.length() > MAX_RESULTADO ? resultado.substring(0, MAX_RESULTADO) : resultado);
+            });
+        } catch (Exception e) {
+            // JSON dañado o "null": se trata como asignación sin resultados
+        }
+        return valores;
+    }
+
+    public static String canonico(String resultado) {
+        if ("Positivo".equalsIgnoreCase(resultado)) return "Positivo";
+        if ("Negativo".equalsIgnoreCase(resultado)) return "Negativo";
+        return resultado;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.sistema_web.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.util.Locale;
+
+// Conteos del dashboard ya agregados por día. Cada fila es (tipo, fecha, clave) → cantidad; la mantiene
+// ResumenDiarioService al guardar asignaciones y notificaciones, y se puede reconstruir desde las tablas de origen.
+@Entity
+@Table(name = "resumen_diario",
+        uniqueConstraints = @UniqueConstraint(name = "uk_resumen_diario", columnNames = {"tipo", "fecha", "clave"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ResumenDiario {
+
+    // Asignaciones (por fecha de ingreso del documento)
+    public static final String TIPO_SUSTANCIA = "SUSTANCIA"; // clave "SUSTANCIA:RESULTADO" (ver normalizar)
+    public static final String TIPO_ESTADO = "ESTADO";       // clave "Positivo" / "Negativo"
+    public static final String TIPO_AREA = "AREA";           // clave = área (ver normalizar)
+    public static final String TIPO_PERITO = "PERITO";       // clave = id del empleado asignado
+    // Notificaciones (por fecha de creación)
+    public static final String TIPO_ACTIVIDAD = "ACTIVIDAD"; // clave vacía
+    public static final String TIPO_EMISOR = "EMISOR";       // clave = id del emisor
+
+    public static final int MAX_CLAVE = 100;
+
+    // Día al que van las asignaciones cuyo documento no tiene fecha de ingreso (filas antiguas). Los totales sin
+    // rango lo incluyen; cualquier filtro por fecha real lo deja afuera.
+    public static final LocalDate SIN_FECHA = LocalDate.of(1970, 1, 1);
+
+    // Forma única de una clave escrita a mano: sin espacios en los bordes, sin tildes y en mayúsculas. La columna
+    // usa la colación por defecto de la base (en MySQL 8, utf8mb4_0900_ai_ci), que ya trata "Toxicología" y
+    // "TOXICOLOGIA" como la misma clave; normalizando antes de contar, los mapas en Java agrupan igual que la base
+    // y la reconstrucción no choca con la restricción única
+    public static String normalizar(String texto) {
+        String sinTildes = Normalizer.normalize(texto.trim(), Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return sinTildes.toUpperCase(Locale.ROOT);
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 20)
+    private String tipo;
+
+    @Column(nullable = false)
+    private LocalDate fecha;
+
+    @Column(nullable = false, length = MAX_CLAVE)
+    private String clave;
+
+    @Column(nullable = false)
+    private Long cantidad;
+}
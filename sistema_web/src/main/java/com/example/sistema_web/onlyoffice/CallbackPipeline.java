@@ -0,0 +1,167 @@
+package com.example.sistema_web.onlyoffice;
+
+import com.example.sistema_web.storage.BlobStore;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Procesa los save-callback de OnlyOffice fuera del hilo HTTP. El controlador solo encola y responde {"error":0};
+// un pool acotado descarga el archivo, lo guarda en el BlobStore, extrae campos y persiste. Los guardados de una
+// misma entidad se aplican en el orden en que llegaron, aunque haya varios hilos.
+@Component
+public class CallbackPipeline {
+
+    private final BlobStore blobStore;
+    private final OnlyOfficeHttpClient httpClient;
+    private final ThreadPoolExecutor workers;
+    private final int capacidad;
+    private final Semaphore cupos;
+    private final int maxIntentos;
+    private final long esperaReintentoMs;
+
+    // Último trabajo encolado por entidad: el siguiente se encadena detrás para conservar el orden
+    private final Map<String, CompletableFuture<Void>> ultimos = new ConcurrentHashMap<>();
+
+    public CallbackPipeline(BlobStore blobStore,
+                            OnlyOfficeHttpClient httpClient,
+                            @Value("${onlyoffice.callback.hilos:2}") int hilos,
+                            @Value("${onlyoffice.callback.capacidad:100}") int capacidad,
+                            @Value("${onlyoffice.callback.reintentos:3}") int maxIntentos,
+                            @Value("${onlyoffice.callback.reintento-ms:2000}") long esperaReintentoMs) {
+        this.blobStore = blobStore;
+        this.httpClient = httpClient;
+        this.capacidad = capacidad;
+        this.cupos = new Semaphore(capacidad);
+        this.maxIntentos = Math.max(1, maxIntentos);
+        this.esperaReintentoMs = esperaReintentoMs;
+
+        AtomicInteger contador = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(hilos, hilos, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(capacidad),
+                r -> {
+                    Thread t = new Thread(r, "onlyoffice-callback-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+    }
+
+    // false = no hay cupo; el controlador debe contestar error para que OnlyOffice no dé el guardado por hecho
+    public boolean encolar(DestinoOnlyOffice destino, Long id, String urlCallback, Long referenciaId) {
+        if (!cupos.tryAcquire()) {
+            System.err.println("⛔ Cola de guardados llena, se rechaza callback de " + destino.nombreDestino() + " ID " + id);
+            return false;
+        }
+
+        String clave = destino.nombreDestino() + ":" + id;
+        Trabajo trabajo = new Trabajo(destino, id, urlCallback, referenciaId);
+
+        CompletableFuture<Void> encadenado = ultimos.compute(clave, (k, anterior) -> {
+            CompletableFuture<Void> base = anterior == null
+                    ? CompletableFuture.completedFuture(null)
+                    : anterior.exceptionally(e -> null);
+            return base.thenCompose(v -> intentar(trabajo, 1));
+        });
+        encadenado.whenComplete((v, e) -> {
+            cupos.release();
+            ultimos.remove(clave, encadenado);
+        });
+        System.out.println("📥 Callback encolado para " + clave + " (pendientes: " + pendientes() + ")");
+        return true;
+    }
+
+    public int pendientes() {
+        return capacidad - cupos.availablePermits();
+    }
+
+    private CompletableFuture<Void> intentar(Trabajo trabajo, int intento) {
+        return CompletableFuture.runAsync(() -> procesar(trabajo), workers)
+                .handle((v, error) -> error == null
+                        ? CompletableFuture.<Void>completedFuture(null)
+                        : reintentar(trabajo, intento, error instanceof CompletionException ? error.getCause() : error))
+                .thenCompose(f -> f);
+    }
+
+    private CompletableFuture<Void> reintentar(Trabajo trabajo, int intento, Throwable error) {
+        String etiqueta = trabajo.destino.nombreDestino() + " ID " + trabajo.id;
+        if (error instanceof ResponseStatusException rse && rse.getStatusCode() == HttpStatus.NOT_FOUND) {
+            System.err.println("❌ " + etiqueta + " ya no existe, se descarta el guardado");
+            return CompletableFuture.completedFuture(null);
+        }
+        if (intento >= maxIntentos) {
+            System.err.println("❌ Guardado de " + etiqueta + " falló tras " + intento + " intentos: " + error.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+        long espera = esperaReintentoMs * (1L << (intento - 1));
+        System.err.println("🔁 Reintento " + (intento + 1) + "/" + maxIntentos + " de " + etiqueta
+                + " en " + espera + " ms: " + error.getMessage());
+        Executor demorado = CompletableFuture.delayedExecutor(espera, TimeUnit.MILLISECONDS);
+        return CompletableFuture.runAsync(() -> { }, demorado).thenCompose(v -> intentar(trabajo, intento + 1));
+    }
+
+    private void procesar(Trabajo trabajo) {
+        DestinoOnlyOffice destino = trabajo.destino;
+        String etiqueta = destino.nombreDestino() + " ID " + trabajo.id;
+
+        // 1. La entidad tiene que existir antes de escribir nada en el BlobStore (si no, 404 y se descarta)
+        String hashActual = destino.hashActual(trabajo.id);
+
+        // 2. Descarga a un temporal en disco y de ahí al BlobStore, que calcula el hash al copiar
+        String hash = descargar(trabajo.url);
+
+        // Reentregas del mismo contenido (status 2 después de un 6, reintentos del Document Server)
+        if (hash.equals(hashActual)) {
+            System.out.println("⏭️ " + etiqueta + " sin cambios (hash " + hash.substring(0, 12) + "), se omite");
+            return;
+        }
+
+        // 3. Extracción sin transacción abierta
+        Map<String, String> campos = destino.extraerCampos(hash);
+
+        // 4. Persistencia
+        destino.aplicarArchivo(trabajo.id, hash, campos, trabajo.referenciaId);
+        System.out.println("✅ Guardado de " + etiqueta + " aplicado | Hash: " + hash);
+    }
+
+    private String descargar(String url) {
+        Path tmp = null;
+        try {
+            tmp = httpClient.descargarATemporal(url);
+            try (InputStream in = Files.newInputStream(tmp)) {
+                return blobStore.guardar(in);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error al descargar " + url + ": " + e.getMessage(), e);
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                    // queda en el directorio temporal del sistema
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    void detener() throws InterruptedException {
+        workers.shutdown();
+        if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+            System.err.println("⚠️ Quedaron guardados de OnlyOffice sin procesar al apagar: " + workers.getQueue().size());
+            workers.shutdownNow();
+        }
+    }
+
+    private record Trabajo(DestinoOnlyOffice destino, Long id, String url, Long referenciaId) {
+    }
+}
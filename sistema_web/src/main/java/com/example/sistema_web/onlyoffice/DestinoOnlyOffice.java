@@ -0,0 +1,22 @@
+package com.example.sistema_web.onlyoffice;
+
+import java.util.Map;
+
+// Entidad que recibe los guardados de OnlyOffice (documentos y oficios). El pipeline llama a estos métodos
+// en orden: hash actual (valida que exista) → descarga → extracción → persistencia.
+public interface DestinoOnlyOffice {
+
+    // Nombre para los logs, p. ej. "Documento"
+    String nombreDestino();
+
+    // Hash del archivo que tiene guardado hoy la entidad (null si aún no tiene); falla si la entidad no existe
+    String hashActual(Long id);
+
+    // Lectura de campos del Word, fuera de cualquier transacción
+    default Map<String, String> extraerCampos(String hash) {
+        return Map.of();
+    }
+
+    // Escritura corta en la BD con el hash ya guardado en el BlobStore
+    void aplicarArchivo(Long id, String hash, Map<String, String> campos, Long referenciaId);
+}
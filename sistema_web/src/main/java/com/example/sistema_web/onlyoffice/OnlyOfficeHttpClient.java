@@ -0,0 +1,232 @@
+package com.example.sistema_web.onlyoffice;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+// Cliente HTTP compartido para bajar archivos del Document Server. Reutiliza conexiones, corta por tiempo total
+// y por tamaño, y escribe el cuerpo a un archivo temporal a medida que llega (nunca se arma el byte[] completo).
+@Component
+public class OnlyOfficeHttpClient {
+
+    private final HttpClient httpClient;
+    private final Duration timeout;
+    private final long maxBytes;
+    private final Path directorioTemporal;
+    private final Map<String, String> reescrituras;
+
+    public OnlyOfficeHttpClient(@Value("${onlyoffice.descarga.connect-timeout-ms:5000}") long connectTimeoutMs,
+                                @Value("${onlyoffice.descarga.timeout-ms:60000}") long timeoutMs,
+                                @Value("${onlyoffice.descarga.max-bytes:52428800}") long maxBytes,
+                                @Value("${onlyoffice.descarga.tmp:}") String directorioTemporal,
+                                @Value("${onlyoffice.descarga.reescribir-hosts:}") String reescrituras) {
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.maxBytes = maxBytes;
+        this.directorioTemporal = directorioTemporal == null || directorioTemporal.isBlank()
+                ? Paths.get(System.getProperty("java.io.tmpdir"))
+                : Paths.get(directorioTemporal);
+        this.reescrituras = parsearReescrituras(reescrituras);
+    }
+
+    // Formato: "host_origen=host_destino[:puerto],otro=..." (la clave puede incluir el puerto para ser más específica)
+    private static Map<String, String> parsearReescrituras(String valor) {
+        Map<String, String> reglas = new LinkedHashMap<>();
+        if (valor == null) return reglas;
+        for (String regla : valor.split(",")) {
+            String[] partes = regla.trim().split("=", 2);
+            if (partes.length == 2 && !partes[0].isBlank() && !partes[1].isBlank()) {
+                reglas.put(partes[0].trim(), partes[1].trim());
+            }
+        }
+        return reglas;
+    }
+
+    // El Document Server arma las URLs con su nombre dentro de Docker; desde el backend se llega por otro host
+    public URI resolver(String url) {
+        URI uri = URI.create(url);
+        if (uri.getHost() == null) return uri;
+
+        String conPuerto = uri.getPort() != -1 ? uri.getHost() + ":" + uri.getPort() : null;
+        String destino = conPuerto != null && reescrituras.containsKey(conPuerto)
+                ? reescrituras.get(conPuerto)
+                : reescrituras.get(uri.getHost());
+        if (destino == null) return uri;
+
+        StringBuilder nueva = new StringBuilder(uri.getScheme()).append("://").append(destino).append(uri.getRawPath());
+        if (uri.getRawQuery() != null) nueva.append('?').append(uri.getRawQuery());
+        return URI.create(nueva.toString());
+    }
+
+    // Devuelve un archivo temporal con el contenido; quien llama lo guarda donde corresponda y lo borra
+    public Path descargarATemporal(String url) throws IOException {
+        URI destino = resolver(url);
+        System.out.println("⬇️ Descargando desde OnlyOffice: " + destino);
+
+        HttpRequest request = HttpRequest.newBuilder(destino).timeout(timeout).GET().build();
+        Path tmp = Files.createTempFile(directorioTemporal, "onlyoffice-", ".docx");
+
+        CompletableFuture<HttpResponse<Path>> envio =
+                httpClient.sendAsync(request, info -> cuerpo(info, tmp));
+        try {
+            // request.timeout() solo cubre hasta recibir los headers; este límite cubre también el cuerpo
+            HttpResponse<Path> respuesta = envio.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            if (respuesta.statusCode() != 200) {
+                throw new IOException("OnlyOffice respondió HTTP " + respuesta.statusCode());
+            }
+            return tmp;
+        } catch (TimeoutException e) {
+            envio.cancel(true);
+            Files.deleteIfExists(tmp);
+            throw new IOException("Tiempo agotado (" + timeout.toSeconds() + " s) descargando " + destino, e);
+        } catch (InterruptedException e) {
+            envio.cancel(true);
+            Files.deleteIfExists(tmp);
+            Thread.currentThread().interrupt();
+            throw new IOException("Descarga interrumpida: " + destino, e);
+        } catch (ExecutionException e) {
+            Files.deleteIfExists(tmp);
+            Throwable causa = e.getCause();
+            if (causa instanceof IOException io) throw io;
+            throw new IOException("Error descargando " + destino + ": " + causa.getMessage(), causa);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    private HttpResponse.BodySubscriber<Path> cuerpo(HttpResponse.ResponseInfo info, Path tmp) {
+        if (info.statusCode() != 200) {
+            return HttpResponse.BodySubscribers.replacing(tmp);
+        }
+        long declarado = info.headers().firstValueAsLong("Content-Length").orElse(-1);
+        if (declarado > maxBytes) {
+            return new Rechazo(new IOException("Archivo de " + declarado + " bytes supera el límite de " + maxBytes));
+        }
+        return new ArchivoTemporal(tmp, maxBytes);
+    }
+
+    // Escribe cada trozo al disco apenas llega y cancela si el cuerpo pasa el límite
+    private static final class ArchivoTemporal implements HttpResponse.BodySubscriber<Path> {
+        private final Path destino;
+        private final long limite;
+        private final CompletableFuture<Path> resultado = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+        private FileChannel canal;
+        private long escritos;
+
+        ArchivoTemporal(Path destino, long limite) {
+            this.destino = destino;
+            this.limite = limite;
+        }
+
+        @Override
+        public CompletionStage<Path> getBody() {
+            return resultado;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            try {
+                canal = FileChannel.open(destino, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                subscription.request(1);
+            } catch (IOException e) {
+                subscription.cancel();
+                resultado.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> trozos) {
+            try {
+                for (ByteBuffer trozo : trozos) {
+                    escritos += trozo.remaining();
+                    if (escritos > limite) {
+                        throw new IOException("El archivo supera el límite de " + limite + " bytes");
+                    }
+                    while (trozo.hasRemaining()) canal.write(trozo);
+                }
+                subscription.request(1);
+            } catch (IOException e) {
+                subscription.cancel();
+                cerrar();
+                resultado.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            cerrar();
+            resultado.completeExceptionally(error);
+        }
+
+        @Override
+        public void onComplete() {
+            try {
+                canal.close();
+                resultado.complete(destino);
+            } catch (IOException e) {
+                resultado.completeExceptionally(e);
+            }
+        }
+
+        private void cerrar() {
+            try {
+                if (canal != null) canal.close();
+            } catch (IOException ignored) {
+                // el archivo temporal se borra igual desde descargarATemporal
+            }
+        }
+    }
+
+    private static final class Rechazo implements HttpResponse.BodySubscriber<Path> {
+        private final CompletableFuture<Path> resultado = new CompletableFuture<>();
+
+        Rechazo(IOException motivo) {
+            resultado.completeExceptionally(motivo);
+        }
+
+        @Override
+        public CompletionStage<Path> getBody() {
+            return resultado;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.cancel();
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+}
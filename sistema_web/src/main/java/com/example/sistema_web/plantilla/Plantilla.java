@@ -0,0 +1,26 @@
+package com.example.sistema_web.plantilla;
+
+// Plantillas Word que usa el sistema; el archivo vive en resources/templates o en el directorio externo de overrides
+public enum Plantilla {
+    INFORME_DOSAJE("informe_dosaje.docx"),
+    INFORME_TOXICOLOGIA("informe_toxicologia.docx"),
+    OFICIO_DOSAJE("oficio_dosaje.docx"),
+    OFICIO_TOXICOLOGIA("oficio_toxicologia.docx");
+
+    private final String archivo;
+
+    Plantilla(String archivo) {
+        this.archivo = archivo;
+    }
+
+    public String getArchivo() {
+        return archivo;
+    }
+
+    public static Plantilla porArchivo(String archivo) {
+        for (Plantilla p : values()) {
+            if (p.archivo.equals(archivo)) return p;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.sistema_web.plantilla;
+
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+// Contenido de una plantilla ya leído a memoria. El arreglo nunca sale de esta clase: quien lo necesita recibe
+// un stream de solo lectura o una copia.
+public final class PlantillaCargada {
+
+    private final Plantilla plantilla;
+    private final byte[] contenido;
+    private final String hash;
+    private final String origen;
+    private final long cargadaEn;
+
+    PlantillaCargada(Plantilla plantilla, byte[] contenido, String hash, String origen, long cargadaEn) {
+        this.plantilla = plantilla;
+        this.contenido = contenido;
+        this.hash = hash;
+        this.origen = origen;
+        this.cargadaEn = cargadaEn;
+    }
+
+    public Plantilla getPlantilla() {
+        return plantilla;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public String getOrigen() {
+        return origen;
+    }
+
+    public long getCargadaEn() {
+        return cargadaEn;
+    }
+
+    public int getTamano() {
+        return contenido.length;
+    }
+
+    public InputStream abrir() {
+        return new ByteArrayInputStream(contenido);
+    }
+
+    public byte[] copia() {
+        return Arrays.copyOf(contenido, contenido.length);
+    }
+
+    // Para los endpoints de descarga: cada escritura abre su propio stream sobre el mismo buffer
+    public Resource comoRecurso() {
+        return new AbstractResource() {
+            @Override
+            public String getDescription() {
+                return "Plantilla " + plantilla.getArchivo() + " (" + origen + ")";
+            }
+
+            @Override
+            public String getFilename() {
+                return plantilla.getArchivo();
+            }
+
+            @Override
+            public InputStream getInputStream() {
+                return abrir();
+            }
+
+            @Override
+            public boolean exists() {
+                return true;
+            }
+
+            @Override
+            public long contentLength() {
+                return contenido.length;
+            }
+
+            @Override
+            public long lastModified() {
+                return cargadaEn;
+            }
+        };
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.sistema_web.plantilla;
+
+import com.example.sistema_web.storage.BlobStore;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Collections;
+import java.util.Map;
+
+// Las plantillas .docx se leen una sola vez al arrancar. Si se configura plantillas.override.path, un archivo con
+// el mismo nombre en ese directorio reemplaza al del classpath y se recarga en caliente cuando cambia.
+@Component
+public class TemplateRegistry {
+
+    private static final String CARPETA_CLASSPATH = "templates/";
+
+    private final Path directorioExterno;
+    private final Map<Plantilla, PlantillaCargada> cargadas = new EnumMap<>(Plantilla.class);
+
+    private WatchService watchService;
+    private Thread vigilante;
+
+    public TemplateRegistry(@Value("${plantillas.override.path:}") String directorioExterno) {
+        this.directorioExterno = directorioExterno == null || directorioExterno.isBlank()
+                ? null : Paths.get(directorioExterno).toAbsolutePath().normalize();
+    }
+
+    @PostConstruct
+    void iniciar() {
+        for (Plantilla plantilla : Plantilla.values()) {
+            recargar(plantilla);
+        }
+        if (directorioExterno != null && Files.isDirectory(directorioExterno)) {
+            vigilarDirectorio();
+        } else if (directorioExterno != null) {
+            System.err.println("⚠️ Directorio de plantillas no existe, se usan solo las del classpath: " + directorioExterno);
+        }
+    }
+
+    @PreDestroy
+    void detener() throws IOException {
+        if (vigilante != null) vigilante.interrupt();
+        if (watchService != null) watchService.close();
+    }
+
+    public PlantillaCargada obtener(Plantilla plantilla) {
+        synchronized (cargadas) {
+            return cargadas.get(plantilla);
+        }
+    }
+
+    public InputStream abrir(Plantilla plantilla) {
+        return obtener(plantilla).abrir();
+    }
+
+    public byte[] contenido(Plantilla plantilla) {
+        return obtener(plantilla).copia();
+    }
+
+    public Resource recurso(Plantilla plantilla) {
+        return obtener(plantilla).comoRecurso();
+    }
+
+    public String version(Plantilla plantilla) {
+        return obtener(plantilla).getHash();
+    }
+
+    public Map<String, String> versiones() {
+        Map<String, String> versiones = new LinkedHashMap<>();
+        for (Plantilla plantilla : Plantilla.values()) {
+            versiones.put(plantilla.getArchivo(), version(plantilla));
+        }
+        return versiones;
+    }
+
+    // Override externo si existe y es un .docx válido; si no, la copia empaquetada en el classpath
+    private void recargar(Plantilla plantilla) {
+        PlantillaCargada nueva = null;
+        if (directorioExterno != null) {
+            Path externo = directorioExterno.resolve(plantilla.getArchivo());
+            if (Files.isRegularFile(externo)) {
+                try {
+                    byte[] bytes = Files.readAllBytes(externo);
+                    if (esDocxCompleto(bytes)) {
+                        nueva = cargada(plantilla, bytes, externo.toString(), Files.getLastModifiedTime(externo).toMillis());
+                    } else if (obtener(plantilla) != null) {
+                        // Probablemente a medio copiar: se sigue usando la que estaba hasta el próximo evento
+                        System.err.println("⚠️ " + externo + " no es un .docx completo, se mantiene la versión anterior");
+                        return;
+                    } else {
+                        System.err.println("⚠️ " + externo + " no es un .docx completo, se ignora");
+                    }
+                } catch (IOException e) {
+                    System.err.println("⚠️ No se pudo leer la plantilla externa " + externo + ": " + e.getMessage());
+                }
+            }
+        }
+        if (nueva == null) {
+            nueva = desdeClasspath(plantilla);
+        }
+
+        PlantillaCargada anterior;
+        synchronized (cargadas) {
+            anterior = cargadas.put(plantilla, nueva);
+        }
+        if (anterior == null || !anterior.getHash().equals(nueva.getHash())) {
+            System.out.println("📄 Plantilla " + plantilla.getArchivo() + " cargada desde " + nueva.getOrigen()
+                    + " (" + nueva.getHash().substring(0, 12) + ")");
+        }
+    }
+
+    private PlantillaCargada desdeClasspath(Plantilla plantilla) {
+        Resource recurso = new ClassPathResource(CARPETA_CLASSPATH + plantilla.getArchivo());
+        try (InputStream in = recurso.getInputStream()) {
+            long modificada;
+            try {
+                modificada = recurso.lastModified();
+            } catch (IOException e) {
+                modificada = System.currentTimeMillis();
+            }
+            return cargada(plantilla, in.readAllBytes(), "classpath", modificada);
+        } catch (IOException e) {
+            throw new IllegalStateException("No se encontró la plantilla " + CARPETA_CLASSPATH + plantilla.getArchivo(), e);
+        }
+    }
+
+    private static PlantillaCargada cargada(Plantilla plantilla, byte[] bytes, String origen, long modificada) {
+        return new PlantillaCargada(plantilla, bytes, BlobStore.sha256(bytes), origen, modificada);
+    }
+
+    // Un .docx es un ZIP cuyo directorio central va al final: si se puede abrir, el archivo terminó de copiarse
+    // (mirar solo las entradas no alcanza, un archivo cortado justo antes del directorio las trae todas). Además
+    // tiene que traer el document.xml y todas las entradas se tienen que poder descomprimir.
+    private static boolean esDocxCompleto(byte[] bytes) {
+        if (bytes.length < 4 || bytes[0] != 'P' || bytes[1] != 'K') return false;
+        try (ZipFile zip = new ZipFile(new SeekableInMemoryByteChannel(bytes))) {
+            if (zip.getEntry("word/document.xml") == null) return false;
+            for (ZipArchiveEntry entrada : Collections.list(zip.getEntries())) {
+                try (InputStream in = zip.getInputStream(entrada)) {
+                    in.transferTo(OutputStream.nullOutputStream());
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void vigilarDirectorio() {
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            directorioExterno.register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            System.err.println("⚠️ No se pudo vigilar el directorio de plantillas: " + e.getMessage());
+            return;
+        }
+
+        vigilante = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key;
+                try {
+                    key = watchService.take();
+                } catch (InterruptedException | ClosedWatchServiceException e) {
+                    return;
+                }
+                for (WatchEvent<?> evento : key.pollEvents()) {
+                    if (evento.context() instanceof Path nombre) {
+                        Plantilla plantilla = Plantilla.porArchivo(nombre.getFileName().toString());
+                        if (plantilla != null) recargar(plantilla);
+                    }
+                }
+                if (!key.reset()) {
+                    System.err.println("⚠️ El directorio de plantillas dejó de estar disponible: " + directorioExterno);
+                    return;
+                }
+            }
+        }, "plantillas-watcher");
+        vigilante.setDaemon(true);
+        vigilante.start();
+        System.out.println("👀 Vigilando cambios de plantillas en: " + directorioExterno);
+    }
+}
@@ -1,16 +1,65 @@
 // src/main/java/com/example/sistema_web/repository/AsignacionDosajeRepository.java
 package com.example.sistema_web.repository;
 
+import com.example.sistema_web.dto.AsignacionDosajeResumenDTO;
+import com.example.sistema_web.dto.FilaReporteMensualDTO;
 import com.example.sistema_web.model.AsignacionDosaje;
 import com.example.sistema_web.model.AsignacionToxicologia;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface AsignacionDosajeRepository extends JpaRepository<AsignacionDosaje, Long> {
     List<AsignacionDosaje> findByEmisorId(Long emisorId);
     long countByCualitativoContaining(String valor);
 
     List<AsignacionDosaje> findByEmpleadoId(Long idLogueado);
-}
\ No newline at end of file
+
+    String RESUMEN = "SELECT new com.example.sistema_web.dto.AsignacionDosajeResumenDTO(a.id, a.area, a.cualitativo, " +
+            "a.estado, d.id, e.id) FROM AsignacionDosaje a LEFT JOIN a.empleado e " +
+            "LEFT JOIN a.documento d ";
+
+    @Query(RESUMEN + "ORDER BY a.id DESC")
+    List<AsignacionDosajeResumenDTO> findResumenes();
+
+    @Query(RESUMEN + "WHERE e.id = :empleadoId ORDER BY a.id DESC")
+    List<AsignacionDosajeResumenDTO> findResumenesByEmpleadoId(@Param("empleadoId") Long empleadoId);
+
+    @Query(RESUMEN + "WHERE a.emisor.id = :emisorId ORDER BY a.id DESC")
+    List<AsignacionDosajeResumenDTO> findResumenesByEmisorId(@Param("emisorId") Long emisorId);
+
+    // Visibilidad (perito o emisor) y filtros opcionales resueltos en la base; la fecha es la de ingreso del documento
+    @Query(RESUMEN + "WHERE (:cursor IS NULL OR a.id < :cursor) " +
+            "AND (:empleadoId IS NULL OR e.id = :empleadoId) " +
+            "AND (:emisorId IS NULL OR a.emisor.id = :emisorId) " +
+            "AND (:estado IS NULL OR a.estado = :estado) " +
+            "AND (:dni IS NULL OR d.dni = :dni) " +
+            "AND (:desde IS NULL OR d.fechaIngreso >= :desde) " +
+            "AND (:hasta IS NULL OR d.fechaIngreso < :hasta) " +
+            "ORDER BY a.id DESC")
+    List<AsignacionDosajeResumenDTO> findPagina(@Param("cursor") Long cursor,
+                           @Param("empleadoId") Long empleadoId,
+                           @Param("emisorId") Long emisorId,
+                           @Param("estado") String estado,
+                           @Param("dni") String dni,
+                           @Param("desde") LocalDateTime desde,
+                           @Param("hasta") LocalDateTime hasta,
+                           Pageable ventana);
+
+    // 📊 Reporte mensual: filas planas leídas de a poco (fetch size) en vez de cargar el período entero.
+    // El Stream debe consumirse y cerrarse dentro de una transacción.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.example.sistema_web.dto.FilaReporteMensualDTO('Dosaje', a.id, a.area, a.estado, a.cualitativo, " +
+            "d.id, d.fechaIngreso, d.nombresyapellidos, d.dni, d.edad, d.tipoMuestra, d.numeroInforme, e.nombre, e.apellido) " +
+            "FROM AsignacionDosaje a JOIN a.documento d LEFT JOIN a.empleado e " +
+            "WHERE d.fechaIngreso >= :desde AND d.fechaIngreso < :hasta ORDER BY d.fechaIngreso, a.id")
+    Stream<FilaReporteMensualDTO> streamReporteMensual(@Param("desde") LocalDateTime desde,
+                                                       @Param("hasta") LocalDateTime hasta);
+}
@@ -1,12 +1,83 @@
 package com.example.sistema_web.repository;
 
+import com.example.sistema_web.dto.DocumentoExportacionDTO;
+import com.example.sistema_web.dto.DocumentoResumenDTO;
 import com.example.sistema_web.model.Documento;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface DocumentoRepository extends JpaRepository<Documento, Long> {
     List<Documento> findByEmpleadoId(Long empleadoId);
-}
\ No newline at end of file
+
+    // 📋 Listados sin archivo: solo columnas escalares + id del dueño
+    String RESUMEN = "SELECT new com.example.sistema_web.dto.DocumentoResumenDTO(d.id, d.nombresyapellidos, d.dni, " +
+            "d.edad, d.cualitativo, d.cuantitativo, d.numeroInforme, d.nombreOficio, d.procedencia, d.tipoMuestra, " +
+            "d.personaQueConduce, e.id) FROM Documento d LEFT JOIN d.empleado e ";
+
+    @Query(RESUMEN + "ORDER BY d.id DESC")
+    List<DocumentoResumenDTO> findResumenes();
+
+    @Query(RESUMEN + "WHERE e.id = :empleadoId ORDER BY d.id DESC")
+    List<DocumentoResumenDTO> findResumenesByEmpleadoId(@Param("empleadoId") Long empleadoId);
+
+    // 📄 Keyset sobre la PK: cada página arranca en "id < cursor", sin OFFSET ni ordenar toda la tabla
+    @Query(RESUMEN + "WHERE (:cursor IS NULL OR d.id < :cursor) " +
+            "AND (:empleadoId IS NULL OR e.id = :empleadoId) " +
+            "AND (:dni IS NULL OR d.dni = :dni) " +
+            "AND (:desde IS NULL OR d.fechaIngreso >= :desde) " +
+            "AND (:hasta IS NULL OR d.fechaIngreso < :hasta) " +
+            "AND (:edadMin IS NULL OR d.edadValor >= :edadMin) " +
+            "AND (:edadMax IS NULL OR d.edadValor <= :edadMax) " +
+            "AND (:cuantitativoMin IS NULL OR d.cuantitativoValor >= :cuantitativoMin) " +
+            "AND (:cuantitativoMax IS NULL OR d.cuantitativoValor <= :cuantitativoMax) " +
+            "ORDER BY d.id DESC")
+    List<DocumentoResumenDTO> findPagina(@Param("cursor") Long cursor,
+                                         @Param("empleadoId") Long empleadoId,
+                                         @Param("dni") String dni,
+                                         @Param("desde") LocalDateTime desde,
+                                         @Param("hasta") LocalDateTime hasta,
+                                         @Param("edadMin") Integer edadMin,
+                                         @Param("edadMax") Integer edadMax,
+                                         @Param("cuantitativoMin") BigDecimal cuantitativoMin,
+                                         @Param("cuantitativoMax") BigDecimal cuantitativoMax,
+                                         Pageable ventana);
+
+    // 📦 Exportación ZIP: orden ascendente para que el manifest quede cronológico
+    String EXPORTACION = "SELECT new com.example.sistema_web.dto.DocumentoExportacionDTO(d.id, d.nombresyapellidos, " +
+            "d.dni, d.edad, d.cualitativo, d.cuantitativo, d.numeroInforme, d.nombreOficio, d.procedencia, " +
+            "d.tipoMuestra, d.personaQueConduce, e.id, d.fechaIngreso, d.archivoHash) FROM Documento d LEFT JOIN d.empleado e ";
+
+    @Query(EXPORTACION + "WHERE d.id IN :ids AND (:empleadoId IS NULL OR e.id = :empleadoId) ORDER BY d.id")
+    List<DocumentoExportacionDTO> findExportacionPorIds(@Param("ids") List<Long> ids,
+                                                        @Param("empleadoId") Long empleadoId);
+
+    @Query(EXPORTACION + "WHERE (:empleadoId IS NULL OR e.id = :empleadoId) " +
+            "AND (:desde IS NULL OR d.fechaIngreso >= :desde) " +
+            "AND (:hasta IS NULL OR d.fechaIngreso < :hasta) " +
+            "ORDER BY d.id")
+    List<DocumentoExportacionDTO> findExportacionPorFechas(@Param("empleadoId") Long empleadoId,
+                                                           @Param("desde") LocalDateTime desde,
+                                                           @Param("hasta") LocalDateTime hasta,
+                                                           Pageable limite);
+
+    // Documentos del período que todavía no tienen ninguna asignación (hoja aparte en el Excel mensual)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(EXPORTACION + "WHERE d.fechaIngreso >= :desde AND d.fechaIngreso < :hasta " +
+            "AND NOT EXISTS (SELECT 1 FROM AsignacionDosaje ad WHERE ad.documento = d) " +
+            "AND NOT EXISTS (SELECT 1 FROM AsignacionToxicologia at WHERE at.documento = d) " +
+            "ORDER BY d.fechaIngreso, d.id")
+    Stream<DocumentoExportacionDTO> streamSinAsignacion(@Param("desde") LocalDateTime desde,
+                                                        @Param("hasta") LocalDateTime hasta);
+}
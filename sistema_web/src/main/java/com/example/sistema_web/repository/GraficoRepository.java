@@ -23,12 +23,13 @@ public interface GraficoRepository extends JpaRepository<Documento, Long> {
         """, nativeQuery = true)
     List<GraficoSustanciaDTO> findAnalisisPorSustancia();
 
-    // 📊 2. Estados: Positivo vs Negativo
+    // 📊 2. Estados: Positivo vs Negativo (toxicología desde resultados_toxicologia, por índice)
     @Query(value = """
         SELECT 
             CASE 
                 WHEN ad.cualitativo LIKE '%Positivo%' THEN 'Positivo'
-                WHEN at.resultado_toxicologico LIKE '%Positivo%' THEN 'Positivo'
+                WHEN EXISTS (SELECT 1 FROM resultados_toxicologia r
+                             WHERE r.resultado = 'Positivo' AND r.asignacion_id = at.id) THEN 'Positivo'
                 ELSE 'Negativo'
             END AS estado,
             COUNT(*) AS cantidad
@@ -39,7 +40,8 @@ public interface GraficoRepository extends JpaRepository<Documento, Long> {
         GROUP BY 
             CASE 
                 WHEN ad.cualitativo LIKE '%Positivo%' THEN 'Positivo'
-                WHEN at.resultado_toxicologico LIKE '%Positivo%' THEN 'Positivo'
+                WHEN EXISTS (SELECT 1 FROM resultados_toxicologia r
+                             WHERE r.resultado = 'Positivo' AND r.asignacion_id = at.id) THEN 'Positivo'
                 ELSE 'Negativo'
             END
         """, nativeQuery = true)
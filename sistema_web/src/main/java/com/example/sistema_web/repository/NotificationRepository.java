@@ -7,7 +7,6 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -47,8 +46,6 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
     // ✅ NUEVO: Contar notificaciones que contienen "completado"
     long countByMessageContaining(String keyword);
 
-    long countByTimestampBetween(LocalDateTime start, LocalDateTime end);
-
     @Query("SELECT n.emisor.id, n.emisor.nombre, n.emisor.apellido, COUNT(n) " +
             "FROM Notification n " +
             "WHERE n.emisor IS NOT NULL " +
@@ -1,12 +1,48 @@
 package com.example.sistema_web.repository;
 
+import com.example.sistema_web.dto.ArchivoExportacionDTO;
 import com.example.sistema_web.model.OficioDosaje;
+import com.example.sistema_web.dto.OficioDosajeResumenDTO;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @Repository
 public interface OficioDosajeRepository extends JpaRepository<OficioDosaje, Long> {
     List<OficioDosaje> findByEmisorId(Long emisorId);
-}
\ No newline at end of file
+
+    String RESUMEN = "SELECT new com.example.sistema_web.dto.OficioDosajeResumenDTO(o.id, o.fecha, o.nro_oficio, " +
+            "o.gradoPNP, o.nombresyapellidosPNP, d.id, d.nombresyapellidos, d.dni, d.edad, d.tipoMuestra, d.nombreOficio) " +
+            "FROM OficioDosaje o LEFT JOIN o.documento d ";
+
+    @Query(RESUMEN + "ORDER BY o.id DESC")
+    List<OficioDosajeResumenDTO> findResumenes();
+
+    @Query(RESUMEN + "WHERE o.emisor.id = :emisorId ORDER BY o.id DESC")
+    List<OficioDosajeResumenDTO> findResumenesByEmisorId(@Param("emisorId") Long emisorId);
+
+    // Rango sobre fecha_valor (DATE indexada), no sobre el texto de "fecha"
+    @Query(RESUMEN + "WHERE (:cursor IS NULL OR o.id < :cursor) " +
+            "AND (:emisorId IS NULL OR o.emisor.id = :emisorId) " +
+            "AND (:peritoId IS NULL OR d.empleado.id = :peritoId) " +
+            "AND (:dni IS NULL OR d.dni = :dni) " +
+            "AND (:desde IS NULL OR o.fechaValor >= :desde) " +
+            "AND (:hasta IS NULL OR o.fechaValor <= :hasta) " +
+            "ORDER BY o.id DESC")
+    List<OficioDosajeResumenDTO> findPagina(@Param("cursor") Long cursor,
+                           @Param("emisorId") Long emisorId,
+                           @Param("peritoId") Long peritoId,
+                           @Param("dni") String dni,
+                           @Param("desde") LocalDate desde,
+                           @Param("hasta") LocalDate hasta,
+                           Pageable ventana);
+
+    @Query("SELECT new com.example.sistema_web.dto.ArchivoExportacionDTO(o.id, o.documento.id, o.archivoHash) " +
+            "FROM OficioDosaje o WHERE o.documento.id IN :documentoIds ORDER BY o.id")
+    List<ArchivoExportacionDTO> findArchivosPorDocumentos(@Param("documentoIds") List<Long> documentoIds);
+}
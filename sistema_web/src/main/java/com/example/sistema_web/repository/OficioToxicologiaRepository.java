@@ -1,12 +1,48 @@
 package com.example.sistema_web.repository;
 import com.example.sistema_web.model.OficioToxicologia;
+import com.example.sistema_web.dto.ArchivoExportacionDTO;
+import com.example.sistema_web.dto.OficioToxicologiaResumenDTO;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.util.List;
 
 @Repository
 
 public interface OficioToxicologiaRepository extends JpaRepository<OficioToxicologia, Long>  {
     List<OficioToxicologia> findByEmisorId(Long emisorId);
+
+    String RESUMEN = "SELECT new com.example.sistema_web.dto.OficioToxicologiaResumenDTO(o.id, o.fecha, o.nro_oficio, " +
+            "o.gradoPNP, o.nombresyapellidosPNP, d.id, d.nombresyapellidos, d.dni, d.edad, d.tipoMuestra, d.nombreOficio) " +
+            "FROM OficioToxicologia o LEFT JOIN o.documento d ";
+
+    @Query(RESUMEN + "ORDER BY o.id DESC")
+    List<OficioToxicologiaResumenDTO> findResumenes();
+
+    @Query(RESUMEN + "WHERE o.emisor.id = :emisorId ORDER BY o.id DESC")
+    List<OficioToxicologiaResumenDTO> findResumenesByEmisorId(@Param("emisorId") Long emisorId);
+
+    // Mismo criterio que en oficio_dosaje: rango sobre fecha_valor, perito = dueño del documento
+    @Query(RESUMEN + "WHERE (:cursor IS NULL OR o.id < :cursor) " +
+            "AND (:emisorId IS NULL OR o.emisor.id = :emisorId) " +
+            "AND (:peritoId IS NULL OR d.empleado.id = :peritoId) " +
+            "AND (:dni IS NULL OR d.dni = :dni) " +
+            "AND (:desde IS NULL OR o.fechaValor >= :desde) " +
+            "AND (:hasta IS NULL OR o.fechaValor <= :hasta) " +
+            "ORDER BY o.id DESC")
+    List<OficioToxicologiaResumenDTO> findPagina(@Param("cursor") Long cursor,
+                           @Param("emisorId") Long emisorId,
+                           @Param("peritoId") Long peritoId,
+                           @Param("dni") String dni,
+                           @Param("desde") LocalDate desde,
+                           @Param("hasta") LocalDate hasta,
+                           Pageable ventana);
+
+    @Query("SELECT new com.example.sistema_web.dto.ArchivoExportacionDTO(o.id, o.documento.id, o.archivoHash) " +
+            "FROM OficioToxicologia o WHERE o.documento.id IN :documentoIds ORDER BY o.id")
+    List<ArchivoExportacionDTO> findArchivosPorDocumentos(@Param("documentoIds") List<Long> documentoIds);
 }
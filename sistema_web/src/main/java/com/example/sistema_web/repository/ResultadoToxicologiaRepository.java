@@ -0,0 +1,49 @@
+package com.example.sistema_web.repository;
+
+import com.example.sistema_web.model.ResultadoToxicologia;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface ResultadoToxicologiaRepository extends JpaRepository<ResultadoToxicologia, Long> {
+
+    @Modifying
+    @Query("DELETE FROM ResultadoToxicologia r WHERE r.asignacion.id = :asignacionId")
+    int borrarPorAsignacion(@Param("asignacionId") Long asignacionId);
+
+    // 📊 Filas (sustancia, resultado, cantidad). Sin filtros se resuelve entero sobre idx_resultado_tox_sustancia.
+    @Query(value = """
+        SELECT r.sustancia, r.resultado, COUNT(*) AS cantidad
+        FROM resultados_toxicologia r
+        WHERE r.resultado IN (:resultados)
+        GROUP BY r.sustancia, r.resultado
+        """, nativeQuery = true)
+    List<Object[]> contarPorSustancia(@Param("resultados") Collection<String> resultados);
+
+    // 📊 Igual que la anterior, acotada por fecha de ingreso del documento y/o área de la asignación
+    @Query(value = """
+        SELECT r.sustancia, r.resultado, COUNT(*) AS cantidad
+        FROM resultados_toxicologia r
+        JOIN asignaciones_toxicologia a ON a.id = r.asignacion_id
+        JOIN documentos d ON d.id = a.documento_id
+        WHERE r.resultado IN (:resultados)
+          AND (:desde IS NULL OR d.fecha_ingreso >= :desde)
+          AND (:hasta IS NULL OR d.fecha_ingreso < :hasta)
+          AND (:area IS NULL OR a.area = :area)
+        GROUP BY r.sustancia, r.resultado
+        """, nativeQuery = true)
+    List<Object[]> contarPorSustanciaFiltrado(@Param("resultados") Collection<String> resultados,
+                                              @Param("desde") LocalDateTime desde,
+                                              @Param("hasta") LocalDateTime hasta,
+                                              @Param("area") String area);
+
+    // 📊 Asignaciones con al menos una sustancia en cada resultado (una asignación puede contar en ambos)
+    @Query("SELECT r.resultado, COUNT(DISTINCT r.asignacion.id) FROM ResultadoToxicologia r " +
+            "WHERE r.resultado IN :resultados GROUP BY r.resultado")
+    List<Object[]> contarAsignacionesPorResultado(@Param("resultados") Collection<String> resultados);
+}
@@ -0,0 +1,29 @@
+package com.example.sistema_web.repository;
+
+import com.example.sistema_web.model.ResumenDiario;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface ResumenDiarioRepository extends JpaRepository<ResumenDiario, Long> {
+
+    // 📊 (clave, total) de un tipo en el rango de días; sin fechas, todo el histórico
+    @Query("SELECT r.clave, SUM(r.cantidad) FROM ResumenDiario r " +
+            "WHERE r.tipo = :tipo AND (:desde IS NULL OR r.fecha >= :desde) AND (:hasta IS NULL OR r.fecha <= :hasta) " +
+            "GROUP BY r.clave")
+    List<Object[]> totalesPorClave(@Param("tipo") String tipo,
+                                   @Param("desde") LocalDate desde,
+                                   @Param("hasta") LocalDate hasta);
+
+    // 📊 (fecha, total) de un tipo, día por día, de una sola clave o de todas (clave null); los días sin filas no aparecen
+    @Query("SELECT r.fecha, SUM(r.cantidad) FROM ResumenDiario r " +
+            "WHERE r.tipo = :tipo AND (:clave IS NULL OR r.clave = :clave) " +
+            "AND r.fecha >= :desde AND r.fecha <= :hasta GROUP BY r.fecha")
+    List<Object[]> totalesPorFecha(@Param("tipo") String tipo,
+                                   @Param("clave") String clave,
+                                   @Param("desde") LocalDate desde,
+                                   @Param("hasta") LocalDate hasta);
+}
@@ -0,0 +1,12 @@
+package com.example.sistema_web.service;
+
+import org.springframework.core.io.Resource;
+
+// Archivo listo para servir: el recurso se abre recién al escribir la respuesta y el hash sirve de ETag
+public record ArchivoDescarga(Resource recurso, String hash) {
+
+    // Prefijo corto del hash para armar claves de OnlyOffice
+    public String version() {
+        return hash.substring(0, 16);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.sistema_web.service;
+
+import com.example.sistema_web.model.ArchivoAdjunto;
+import com.example.sistema_web.plantilla.Plantilla;
+import com.example.sistema_web.plantilla.PlantillaCargada;
+import com.example.sistema_web.plantilla.TemplateRegistry;
+import com.example.sistema_web.storage.BlobMigrator;
+import com.example.sistema_web.storage.BlobStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+// Puente entre las entidades con archivo Word y el BlobStore
+@Service
+@RequiredArgsConstructor
+public class ArchivoService {
+
+    private final BlobStore blobStore;
+    private final BlobMigrator blobMigrator;
+    private final TemplateRegistry templateRegistry;
+
+    // Devuelve el hash del archivo, migrando al vuelo las filas que aún lo tienen en la columna antigua
+    public String resolverHash(ArchivoAdjunto entidad) {
+        if (entidad.getArchivoHash() == null) {
+            String hash = blobMigrator.migrar(entidad);
+            if (hash != null) entidad.setArchivoHash(hash);
+        }
+        return entidad.getArchivoHash();
+    }
+
+    public boolean tieneArchivo(ArchivoAdjunto entidad) {
+        return resolverHash(entidad) != null;
+    }
+
+    // null si la entidad todavía no tiene archivo guardado
+    public byte[] leer(ArchivoAdjunto entidad) {
+        String hash = resolverHash(entidad);
+        return hash != null ? blobStore.leer(hash) : null;
+    }
+
+    // Archivo guardado de la entidad o, si todavía no tiene, la plantilla indicada
+    public ArchivoDescarga descargar(ArchivoAdjunto entidad, Plantilla plantilla) {
+        String hash = resolverHash(entidad);
+        if (hash != null) {
+            return new ArchivoDescarga(blobStore.recurso(hash), hash);
+        }
+        PlantillaCargada cargada = templateRegistry.obtener(plantilla);
+        return new ArchivoDescarga(cargada.comoRecurso(), cargada.getHash());
+    }
+
+    public byte[] leer(String hash) {
+        return blobStore.leer(hash);
+    }
+
+    public InputStream abrir(String hash) throws IOException {
+        return blobStore.abrir(hash);
+    }
+
+    // Sin contenido es un error del que llama: no se guarda nada y la entidad conserva el archivo que tenía.
+    // Donde el archivo es opcional (DTO sin archivo) se decide antes de llamar.
+    public void guardar(ArchivoAdjunto entidad, byte[] contenido) {
+        if (contenido == null || contenido.length == 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "El archivo está vacío");
+        }
+        entidad.setArchivoHash(blobStore.guardar(contenido));
+    }
+
+    // Huella de una generación: los datos inyectados más el archivo del que se partió. Si al volver a sincronizar
+    // la huella es la misma, el resultado sería idéntico y no hace falta procesar ni guardar nada.
+    public String huella(Map<String, String> datos, String hashFuente) {
+        StringBuilder sb = new StringBuilder(hashFuente == null ? "" : hashFuente);
+        datos.forEach((clave, valor) -> sb.append('\u0000').append(clave).append('=').append(valor));
+        return BlobStore.sha256(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -1,13 +1,17 @@
 package com.example.sistema_web.service;
 
 import com.example.sistema_web.dto.AsignacionDosajeDTO;
+import com.example.sistema_web.dto.FiltroListadoDTO;
+import com.example.sistema_web.dto.AsignacionDosajeResumenDTO;
+import com.example.sistema_web.dto.PaginaDTO;
 
 import java.util.List;
 
 public interface AsignacionDosajeService {
     AsignacionDosajeDTO crear(AsignacionDosajeDTO dto);
     AsignacionDosajeDTO obtenerPorId(Long id);
-    List<AsignacionDosajeDTO> listar();
+    List<AsignacionDosajeResumenDTO> listar();
+    PaginaDTO<AsignacionDosajeResumenDTO> listarPaginado(FiltroListadoDTO filtro);
     AsignacionDosajeDTO actualizar(Long id, AsignacionDosajeDTO dto);
     void eliminar(Long id);
     void sincronizarDatosAlWord(Long id);
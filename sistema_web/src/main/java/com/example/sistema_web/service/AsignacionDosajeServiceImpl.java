@@ -2,6 +2,9 @@ package com.example.sistema_web.service;
 
 import com.example.sistema_web.config.JwtAuthFilter;
 import com.example.sistema_web.dto.AsignacionDosajeDTO;
+import com.example.sistema_web.dto.FiltroListadoDTO;
+import com.example.sistema_web.dto.AsignacionDosajeResumenDTO;
+import com.example.sistema_web.dto.PaginaDTO;
 import com.example.sistema_web.model.AsignacionDosaje;
 import com.example.sistema_web.model.Documento;
 import com.example.sistema_web.model.Empleado;
@@ -9,12 +12,13 @@ import com.example.sistema_web.repository.AsignacionDosajeRepository;
 import com.example.sistema_web.repository.DocumentoRepository;
 import com.example.sistema_web.repository.EmpleadoRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -25,6 +29,8 @@ public class AsignacionDosajeServiceImpl implements AsignacionDosajeService {
     private final EmpleadoRepository empleadoRepository;
     private final NotificationService notificationService;
     private final DocumentoService documentoService;
+    private final ResumenDiarioService resumenDiarioService;
+    private final ApplicationEventPublisher eventos;
 
     @Override
     @Transactional
@@ -50,6 +56,8 @@ public class AsignacionDosajeServiceImpl implements AsignacionDosajeService {
                 .build();
 
         AsignacionDosaje saved = repository.save(asignacion);
+        resumenDiarioService.aplicar(Map.of(), resumenDiarioService.aportes(saved));
+        eventos.publishEvent(new CacheDashboard.Modificacion(CacheDashboard.Origen.ASIGNACIONES));
 
         // Sincronización automática
         this.verificarYActualizarWord(dto);
@@ -81,6 +89,7 @@ public class AsignacionDosajeServiceImpl implements AsignacionDosajeService {
     public AsignacionDosajeDTO actualizar(Long id, AsignacionDosajeDTO dto) {
         AsignacionDosaje asignacion = repository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Asignación no encontrada con ID: " + id));
+        Map<ResumenDiarioService.Clave, Long> aportesPrevios = resumenDiarioService.aportes(asignacion);
 
         asignacion.setArea(dto.getArea());
         asignacion.setCualitativo(dto.getCualitativo());
@@ -99,6 +108,8 @@ public class AsignacionDosajeServiceImpl implements AsignacionDosajeService {
         }
 
         AsignacionDosaje updated = repository.save(asignacion);
+        resumenDiarioService.aplicar(aportesPrevios, resumenDiarioService.aportes(updated));
+        eventos.publishEvent(new CacheDashboard.Modificacion(CacheDashboard.Origen.ASIGNACIONES));
 
         // ✅ Sincronización automática
         this.verificarYActualizarWord(dto);
@@ -149,44 +160,67 @@ public class AsignacionDosajeServiceImpl implements AsignacionDosajeService {
     }
 
     @Override
-    public List<AsignacionDosajeDTO> listar() {
+    public List<AsignacionDosajeResumenDTO> listar() {
         Long idLogueado = JwtAuthFilter.getCurrentEmpleadoId();
         if (idLogueado == null) {
             System.out.println("👑 Acceso SuperAdmin detectado por ID nulo (Sistema Base). Listando todo.");
-            return repository.findAll().stream().map(this::mapToDTO).collect(Collectors.toList());
+            return repository.findResumenes();
         }
 
         Empleado empLogueado = empleadoRepository.findById(idLogueado).orElse(null);
-        if (empLogueado == null) return repository.findAll().stream().map(this::mapToDTO).collect(Collectors.toList());
+        if (empLogueado == null) return repository.findResumenes();
         String cargo = empLogueado.getCargo().toLowerCase();
-        List<AsignacionDosaje> listaFinal;
 
         // 🛡️ REGLA DE VISIBILIDAD POR EMPLEADO_ID (PARA QUÍMICOS)
         if (cargo.contains("admin")) {
             // El Administrador sigue viendo TODO
             System.out.println("🔓 ACCESO TOTAL - Administrador: " + empLogueado.getNombre());
-            listaFinal = repository.findAll();
+            return repository.findResumenes();
         }
         else if (cargo.contains("quimico") || cargo.contains("químico")) {
             // 🔒 Los Químicos SOLO ven los trabajos donde ellos son el PERITO ASIGNADO (empleado_id)
             System.out.println("🔒 ACCESO PRIVADO (Por Asignación) - Químico: " + empLogueado.getNombre());
-            listaFinal = repository.findByEmpleadoId(idLogueado);
+            return repository.findResumenesByEmpleadoId(idLogueado);
         }
         else {
             // Los Auxiliares ven lo que ellos mismos REGISTRARON (emisor_id)
             System.out.println("🔒 ACCESO PRIVADO (Por Creación) - Auxiliar: " + empLogueado.getNombre());
-            listaFinal = repository.findByEmisorId(idLogueado);
+            return repository.findResumenesByEmisorId(idLogueado);
+        }
+    }
+
+    @Override
+    public PaginaDTO<AsignacionDosajeResumenDTO> listarPaginado(FiltroListadoDTO filtro) {
+        Long idLogueado = JwtAuthFilter.getCurrentEmpleadoId();
+        Long empleadoId = filtro.peritoId();
+        Long emisorId = null;
+
+        Empleado empLogueado = idLogueado != null ? empleadoRepository.findById(idLogueado).orElse(null) : null;
+        if (empLogueado != null) {
+            String cargo = empLogueado.getCargo().toLowerCase().trim();
+            if (cargo.contains("quimico") || cargo.contains("químico")) {
+                // Un químico no puede pedir la bandeja de otro perito
+                if (empleadoId != null && !empleadoId.equals(idLogueado)) return new PaginaDTO<>(List.of(), null);
+                empleadoId = idLogueado;
+            } else if (!cargo.contains("admin")) {
+                emisorId = idLogueado;
+            }
         }
 
-        return listaFinal.stream()
-                .map(this::mapToDTO)
-                .sorted((a, b) -> b.getId().compareTo(a.getId()))
-                .collect(Collectors.toList());
+        List<AsignacionDosajeResumenDTO> filas = repository.findPagina(filtro.cursor(), empleadoId, emisorId,
+                filtro.estadoNormalizado(), filtro.dniNormalizado(), filtro.desdeInicio(), filtro.hastaFin(),
+                filtro.ventana());
+        return PaginaDTO.de(filas, filtro.limiteEfectivo(), AsignacionDosajeResumenDTO::id);
     }
 
     @Override
+    @Transactional
     public void eliminar(Long id) {
-        repository.deleteById(id);
+        repository.findById(id).ifPresent(asignacion -> {
+            resumenDiarioService.aplicar(resumenDiarioService.aportes(asignacion), Map.of());
+            repository.delete(asignacion);
+            eventos.publishEvent(new CacheDashboard.Modificacion(CacheDashboard.Origen.ASIGNACIONES));
+        });
     }
 
     private AsignacionDosajeDTO mapToDTO(AsignacionDosaje asignacion) {
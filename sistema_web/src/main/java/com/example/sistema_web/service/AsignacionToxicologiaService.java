@@ -2,12 +2,16 @@
 package com.example.sistema_web.service;
 
 import com.example.sistema_web.dto.AsignacionToxicologiaDTO;
+import com.example.sistema_web.dto.FiltroListadoDTO;
+import com.example.sistema_web.dto.AsignacionToxicologiaResumenDTO;
+import com.example.sistema_web.dto.PaginaDTO;
 import java.util.List;
 
 public interface AsignacionToxicologiaService {
     AsignacionToxicologiaDTO crear(AsignacionToxicologiaDTO dto);
     AsignacionToxicologiaDTO obtenerPorId(Long id);
-    List<AsignacionToxicologiaDTO> listar();
+    List<AsignacionToxicologiaResumenDTO> listar();
+    PaginaDTO<AsignacionToxicologiaResumenDTO> listarPaginado(FiltroListadoDTO filtro);
     AsignacionToxicologiaDTO actualizar(Long id, AsignacionToxicologiaDTO dto);
     void eliminar(Long id);
     void sincronizarDatosAlWord(Long id);
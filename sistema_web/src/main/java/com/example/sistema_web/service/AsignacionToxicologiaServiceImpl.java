@@ -2,22 +2,27 @@ package com.example.sistema_web.service;
 
 import com.example.sistema_web.config.JwtAuthFilter;
 import com.example.sistema_web.dto.AsignacionToxicologiaDTO;
+import com.example.sistema_web.dto.FiltroListadoDTO;
+import com.example.sistema_web.dto.AsignacionToxicologiaResumenDTO;
+import com.example.sistema_web.dto.PaginaDTO;
 import com.example.sistema_web.dto.ToxicologiaResultadoDTO;
 import com.example.sistema_web.model.AsignacionToxicologia;
 import com.example.sistema_web.model.Documento;
 import com.example.sistema_web.model.Empleado;
+import com.example.sistema_web.model.ResultadoToxicologia;
 import com.example.sistema_web.repository.AsignacionToxicologiaRepository;
 import com.example.sistema_web.repository.DocumentoRepository;
 import com.example.sistema_web.repository.EmpleadoRepository;
-import org.apache.poi.xwpf.usermodel.*;
+import com.example.sistema_web.repository.ResultadoToxicologiaRepository;
+import com.example.sistema_web.word.Ooxml;
+import com.example.sistema_web.word.ParcheDocx;
 import lombok.RequiredArgsConstructor;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.*;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -32,7 +37,12 @@ public class AsignacionToxicologiaServiceImpl implements AsignacionToxicologiaSe
     private final AsignacionToxicologiaRepository repository;
     private final DocumentoRepository documentoRepository;
     private final EmpleadoRepository empleadoRepository;
+    private final ResultadoToxicologiaRepository resultadoRepository;
     private final NotificationService notificationService;
+    private final ArchivoService archivoService;
+    private final ParcheDocx parcheDocx;
+    private final ResumenDiarioService resumenDiarioService;
+    private final ApplicationEventPublisher eventos;
 
     @Override
     @Transactional
@@ -56,6 +66,9 @@ public class AsignacionToxicologiaServiceImpl implements AsignacionToxicologiaSe
 
         asignacion.setResultados(dto.getResultados());
         AsignacionToxicologia saved = repository.save(asignacion);
+        guardarResultados(saved);
+        resumenDiarioService.aplicar(Map.of(), resumenDiarioService.aportes(saved));
+        eventos.publishEvent(new CacheDashboard.Modificacion(CacheDashboard.Origen.ASIGNACIONES));
 
         sincronizarDatosAlWord(saved.getId());
 
@@ -83,11 +96,15 @@ public class AsignacionToxicologiaServiceImpl implements AsignacionToxicologiaSe
     public AsignacionToxicologiaDTO actualizar(Long id, AsignacionToxicologiaDTO dto) {
         AsignacionToxicologia asignacion = repository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Asignación no encontrada"));
+        Map<ResumenDiarioService.Clave, Long> aportesPrevios = resumenDiarioService.aportes(asignacion);
 
         asignacion.setEstado(dto.getEstado());
         asignacion.setResultados(dto.getResultados());
 
         AsignacionToxicologia updated = repository.save(asignacion);
+        guardarResultados(updated);
+        resumenDiarioService.aplicar(aportesPrevios, resumenDiarioService.aportes(updated));
+        eventos.publishEvent(new CacheDashboard.Modificacion(CacheDashboard.Origen.ASIGNACIONES));
 
         // Sincronización automática al actualizar
         sincronizarDatosAlWord(updated.getId());
@@ -95,13 +112,28 @@ public class AsignacionToxicologiaServiceImpl implements AsignacionToxicologiaSe
         return mapToDTO(updated);
     }
 
+    // Copia normalizada del JSON (una fila por sustancia) que usan los reportes; se reemplaza entera en cada guardado
+    private void guardarResultados(AsignacionToxicologia asignacion) {
+        resultadoRepository.borrarPorAsignacion(asignacion.getId());
+
+        List<ResultadoToxicologia> filas = new ArrayList<>();
+        ResultadoToxicologia.leerJson(asignacion.getResultadoToxicologico()).forEach((sustancia, resultado) ->
+                filas.add(ResultadoToxicologia.builder()
+                        .asignacion(asignacion)
+                        .sustancia(sustancia)
+                        .resultado(resultado)
+                        .build()));
+        resultadoRepository.saveAll(filas);
+    }
+
     @Override
     @Transactional
     public void eliminar(Long id) {
-        if (!repository.existsById(id)) {
-            throw new RuntimeException("ID no encontrado para eliminar");
-        }
-        repository.deleteById(id);
+        AsignacionToxicologia asignacion = repository.findById(id)
+                .orElseThrow(() -> new RuntimeException("ID no encontrado para eliminar"));
+        resumenDiarioService.aplicar(resumenDiarioService.aportes(asignacion), Map.of());
+        repository.delete(asignacion);
+        eventos.publishEvent(new CacheDashboard.Modificacion(CacheDashboard.Origen.ASIGNACIONES));
     }
 
     @Override
@@ -111,44 +143,62 @@ public class AsignacionToxicologiaServiceImpl implements AsignacionToxicologiaSe
     }
 
     @Override
-    public List<AsignacionToxicologiaDTO> listar() {
+    public List<AsignacionToxicologiaResumenDTO> listar() {
         // 1. Obtener el ID del empleado logueado desde el Token
         Long idLogueado = JwtAuthFilter.getCurrentEmpleadoId();
 
         // Caso SuperAdmin (usuario base sin empleado asociado)
         if (idLogueado == null) {
-            return repository.findAll().stream().map(this::mapToDTO).collect(Collectors.toList());
+            return repository.findResumenes();
         }
 
         Empleado empLogueado = empleadoRepository.findById(idLogueado).orElse(null);
         if (empLogueado == null) {
-            return repository.findAll().stream().map(this::mapToDTO).collect(Collectors.toList());
+            return repository.findResumenes();
         }
 
         String cargo = empLogueado.getCargo().toLowerCase().trim();
-        List<AsignacionToxicologia> listaFinal;
 
         // 🛡️ REGLA DE VISIBILIDAD POR EMPLEADO_ID (PARA QUÍMICOS)
         if (cargo.contains("admin")) {
             // El Administrador sigue viendo TODO
             System.out.println("🔓 ACCESO TOTAL - Administrador: " + empLogueado.getNombre());
-            listaFinal = repository.findAll();
+            return repository.findResumenes();
         }
         else if (cargo.contains("quimico") || cargo.contains("químico")) {
             // 🔒 Los Químicos SOLO ven los trabajos donde ellos son el PERITO ASIGNADO (empleado_id)
             System.out.println("🔒 ACCESO PRIVADO (Por Asignación) - Químico: " + empLogueado.getNombre());
-            listaFinal = repository.findByEmpleadoId(idLogueado);
+            return repository.findResumenesByEmpleadoId(idLogueado);
         }
         else {
             // Los Auxiliares ven lo que ellos mismos REGISTRARON (emisor_id)
             System.out.println("🔒 ACCESO PRIVADO (Por Creación) - Auxiliar: " + empLogueado.getNombre());
-            listaFinal = repository.findByEmisorId(idLogueado);
+            return repository.findResumenesByEmisorId(idLogueado);
         }
+    }
 
-        return listaFinal.stream()
-                .map(this::mapToDTO)
-                .sorted((a, b) -> b.getId().compareTo(a.getId())) // Más nuevos primero
-                .collect(Collectors.toList());
+    @Override
+    public PaginaDTO<AsignacionToxicologiaResumenDTO> listarPaginado(FiltroListadoDTO filtro) {
+        Long idLogueado = JwtAuthFilter.getCurrentEmpleadoId();
+        Long empleadoId = filtro.peritoId();
+        Long emisorId = null;
+
+        Empleado empLogueado = idLogueado != null ? empleadoRepository.findById(idLogueado).orElse(null) : null;
+        if (empLogueado != null) {
+            String cargo = empLogueado.getCargo().toLowerCase().trim();
+            if (cargo.contains("quimico") || cargo.contains("químico")) {
+                // Un químico no puede pedir la bandeja de otro perito
+                if (empleadoId != null && !empleadoId.equals(idLogueado)) return new PaginaDTO<>(List.of(), null);
+                empleadoId = idLogueado;
+            } else if (!cargo.contains("admin")) {
+                emisorId = idLogueado;
+            }
+        }
+
+        List<AsignacionToxicologiaResumenDTO> filas = repository.findPagina(filtro.cursor(), empleadoId, emisorId,
+                filtro.estadoNormalizado(), filtro.dniNormalizado(), filtro.desdeInicio(), filtro.hastaFin(),
+                filtro.ventana());
+        return PaginaDTO.de(filas, filtro.limiteEfectivo(), AsignacionToxicologiaResumenDTO::id);
     }
 
     @Override
@@ -158,85 +208,96 @@ public class AsignacionToxicologiaServiceImpl implements AsignacionToxicologiaSe
         AsignacionToxicologia asignacion = repository.findById(id).orElseThrow();
         Documento docBase = asignacion.getDocumento();
 
-        if (docBase == null || docBase.getArchivo() == null) return;
+        byte[] archivo = docBase != null ? archivoService.leer(docBase) : null;
+        if (archivo == null) return;
 
-        try (ByteArrayInputStream bis = new ByteArrayInputStream(docBase.getArchivo());
-             XWPFDocument doc = new XWPFDocument(bis)) {
+        // --- 1. FILTRADO DE DATOS (Con .trim() para seguridad) ---
+        Map<String, String> activas = filtrarSustanciasActivas(asignacion.getResultados());
 
-            // --- 1. FILTRADO DE DATOS (Con .trim() para seguridad) ---
-            Map<String, String> activas = filtrarSustanciasActivas(asignacion.getResultados());
+        List<String> positivos = activas.entrySet().stream()
+                .filter(e -> e.getValue() != null && e.getValue().trim().equalsIgnoreCase("POSITIVO"))
+                .map(Map.Entry::getKey).collect(Collectors.toList());
 
-            List<String> positivos = activas.entrySet().stream()
-                    .filter(e -> e.getValue() != null && e.getValue().trim().equalsIgnoreCase("POSITIVO"))
-                    .map(Map.Entry::getKey).collect(Collectors.toList());
+        List<String> negativos = activas.entrySet().stream()
+                .filter(e -> e.getValue() != null && e.getValue().trim().equalsIgnoreCase("NEGATIVO"))
+                .map(Map.Entry::getKey).collect(Collectors.toList());
 
-            List<String> negativos = activas.entrySet().stream()
-                    .filter(e -> e.getValue() != null && e.getValue().trim().equalsIgnoreCase("NEGATIVO"))
-                    .map(Map.Entry::getKey).collect(Collectors.toList());
+        System.out.println("DEBUG WORD -> ID: " + id + " | Positivos: " + positivos.size() + " | Negativos: " + negativos.size());
 
-            System.out.println("DEBUG WORD -> ID: " + id + " | Positivos: " + positivos.size() + " | Negativos: " + negativos.size());
+        // --- 2. GENERAR TEXTO DE CONCLUSIÓN ---
+        String conclusion = redactarTextoConclusiones(positivos, negativos);
 
-            // --- 2. LLENADO DE TABLA (Busca por "EXAMEN") ---
-            XWPFTable tablaExamen = null;
-            for (XWPFTable table : doc.getTables()) {
-                // Buscamos la tabla que tenga "EXAMEN" en la primera celda
-                if (!table.getRows().isEmpty() && table.getRow(0).getCell(0).getText().toUpperCase().contains("EXAMEN")) {
-                    tablaExamen = table;
-                    break;
-                }
-            }
+        try {
+            // Se edita solo word/document.xml; el resto del paquete (logos, firmas escaneadas) se copia sin tocar
+            byte[] editado = parcheDocx.editarDocumento(archivo, documento -> {
+                CTBody cuerpo = documento.getBody();
 
-            if (tablaExamen != null) {
-                // Borrar filas viejas (dejamos solo la cabecera, índice 0)
-                while (tablaExamen.getRows().size() > 1) {
-                    tablaExamen.removeRow(1);
+                // --- 3. LLENADO DE TABLA (Busca por "EXAMEN") ---
+                CTTbl tablaExamen = null;
+                for (CTTbl table : cuerpo.getTblList()) {
+                    // Buscamos la tabla que tenga "EXAMEN" en la primera celda
+                    if (table.sizeOfTrArray() > 0 && table.getTrArray(0).sizeOfTcArray() > 0
+                            && Ooxml.texto(table.getTrArray(0).getTcArray(0)).toUpperCase().contains("EXAMEN")) {
+                        tablaExamen = table;
+                        break;
+                    }
                 }
-                // Llenar nuevas filas
-                for (String s : positivos) agregarFilaTabla(tablaExamen, s, "POSITIVO");
-                for (String s : negativos) agregarFilaTabla(tablaExamen, s, "NEGATIVO");
-            }
 
-            // --- 3. GENERAR TEXTO DE CONCLUSIÓN ---
-            String conclusion = redactarTextoConclusiones(positivos, negativos);
+                if (tablaExamen != null) {
+                    // Las filas nuevas copian el formato (anchos, bordes, alineación) de la primera fila de datos
+                    // que tenía la tabla; si no tenía ninguna, el de la cabecera
+                    boolean conDatos = tablaExamen.sizeOfTrArray() > 1;
+                    CTRow modelo = (CTRow) tablaExamen.getTrArray(conDatos ? 1 : 0).copy();
+                    // Borrar filas viejas (dejamos solo la cabecera, índice 0)
+                    while (tablaExamen.sizeOfTrArray() > 1) {
+                        tablaExamen.removeTr(1);
+                    }
+                    // Llenar nuevas filas
+                    for (String s : positivos) agregarFilaTabla(tablaExamen, modelo, !conDatos, s, "POSITIVO");
+                    for (String s : negativos) agregarFilaTabla(tablaExamen, modelo, !conDatos, s, "NEGATIVO");
+                }
 
-            // --- 4. REEMPLAZO INTELIGENTE (LA SOLUCIÓN) ---
-            // Buscamos la etiqueta O el inicio del texto antiguo para sobrescribirlo
-            String marcadorEtiqueta = "$c_resultado";
-            String textoAntiguoParcial = "-- En la muestra";
+                // --- 4. REEMPLAZO INTELIGENTE (LA SOLUCIÓN) ---
+                // Buscamos la etiqueta O el inicio del texto antiguo para sobrescribirlo
+                String marcadorEtiqueta = "$c_resultado";
+                String textoAntiguoParcial = "-- En la muestra";
 
-            boolean reemplazado = false;
+                boolean reemplazado = false;
 
-            // A) Buscar en Párrafos normales
-            for (XWPFParagraph p : doc.getParagraphs()) {
-                String textoP = p.getText();
-                // 💡 AQUÍ ESTÁ EL TRUCO: Busca la variable O el texto viejo
-                if (textoP != null && (textoP.contains(marcadorEtiqueta) || textoP.contains(textoAntiguoParcial))) {
-                    sobrescribirParrafoCompleto(p, conclusion);
-                    reemplazado = true;
+                // A) Buscar en Párrafos normales
+                for (CTP p : cuerpo.getPList()) {
+                    String textoP = Ooxml.texto(p);
+                    // 💡 AQUÍ ESTÁ EL TRUCO: Busca la variable O el texto viejo
+                    if (textoP.contains(marcadorEtiqueta) || textoP.contains(textoAntiguoParcial)) {
+                        sobrescribirParrafoCompleto(p, conclusion);
+                        reemplazado = true;
+                    }
                 }
-            }
 
-            // B) Buscar dentro de Tablas (por si el texto está en una celda)
-            if (!reemplazado) {
-                for (XWPFTable tbl : doc.getTables()) {
-                    for (XWPFTableRow row : tbl.getRows()) {
-                        for (XWPFTableCell cell : row.getTableCells()) {
-                            for (XWPFParagraph p : cell.getParagraphs()) {
-                                String textoP = p.getText();
-                                if (textoP != null && (textoP.contains(marcadorEtiqueta) || textoP.contains(textoAntiguoParcial))) {
-                                    sobrescribirParrafoCompleto(p, conclusion);
+                // B) Buscar dentro de Tablas (por si el texto está en una celda)
+                if (!reemplazado) {
+                    for (CTTbl tbl : cuerpo.getTblList()) {
+                        for (CTRow row : tbl.getTrList()) {
+                            for (CTTc cell : row.getTcList()) {
+                                for (CTP p : cell.getPList()) {
+                                    String textoP = Ooxml.texto(p);
+                                    if (textoP.contains(marcadorEtiqueta) || textoP.contains(textoAntiguoParcial)) {
+                                        sobrescribirParrafoCompleto(p, conclusion);
+                                        reemplazado = true;
+                                    }
                                 }
                             }
                         }
                     }
                 }
-            }
+                return tablaExamen != null || reemplazado;
+            });
 
             // --- 5. GUARDAR ---
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            doc.write(bos);
-            docBase.setArchivo(bos.toByteArray());
-            documentoRepository.save(docBase);
+            if (editado != null) {
+                archivoService.guardar(docBase, editado);
+                documentoRepository.save(docBase);
+            }
 
             System.out.println("✅ Sincronización finalizada exitosamente.");
 
@@ -246,27 +307,38 @@ public class AsignacionToxicologiaServiceImpl implements AsignacionToxicologiaSe
         }
     }
 
-    private void agregarFilaTabla(XWPFTable tabla, String sustancia, String resultado) {
-        XWPFTableRow row = tabla.createRow();
-        row.getCell(0).setText(sustancia.toUpperCase());
-        XWPFRun run = row.getCell(1).getParagraphs().get(0).createRun();
-        run.setText(resultado);
-        run.setBold(true);
-        run.setFontFamily("Times New Roman");
-        run.setFontSize(11);
+    // Igual que XWPFTable.createRow(): tantas celdas como la cabecera, cada una con su párrafo
+    private void agregarFilaTabla(CTTbl tabla, CTRow modelo, boolean esCabecera, String sustancia, String resultado) {
+        int columnas = modelo.sizeOfTcArray();
+        CTRow row = tabla.addNewTr();
+        if (modelo.isSetTrPr()) row.setTrPr(modelo.getTrPr());
+        for (CTTc celdaModelo : modelo.getTcArray()) {
+            CTTc celda = row.addNewTc();
+            if (celdaModelo.isSetTcPr()) {
+                celda.setTcPr(celdaModelo.getTcPr());
+                // El relleno de la cabecera no va en las filas de datos
+                if (esCabecera && celda.getTcPr().isSetShd()) celda.getTcPr().unsetShd();
+            }
+            CTP p = celda.addNewP();
+            if (celdaModelo.sizeOfPArray() > 0 && celdaModelo.getPArray(0).isSetPPr()) {
+                p.setPPr(celdaModelo.getPArray(0).getPPr());
+            }
+        }
+        if (columnas == 0) return;
+        Ooxml.nuevoRun(row.getTcArray(0).getPArray(0), sustancia.toUpperCase());
+        if (columnas > 1) {
+            CTR run = Ooxml.nuevoRun(row.getTcArray(1).getPArray(0), resultado);
+            Ooxml.formato(run, "Times New Roman", 11, true);
+        }
     }
-    private void sobrescribirParrafoCompleto(XWPFParagraph p, String nuevoTexto) {
+    private void sobrescribirParrafoCompleto(CTP p, String nuevoTexto) {
         // 1. Borrar todo el contenido actual del párrafo (runs)
-        for (int i = p.getRuns().size() - 1; i >= 0; i--) {
-            p.removeRun(i);
-        }
+        Ooxml.vaciar(p);
 
         // 2. Crear un nuevo run con el texto correcto
         // (Opcional: Si necesitas negritas parciales, usa tu lógica de split aquí)
-        XWPFRun run = p.createRun();
-        run.setText(nuevoTexto);
-        run.setFontFamily("Times New Roman");
-        run.setFontSize(12);
+        CTR run = Ooxml.nuevoRun(p, nuevoTexto);
+        Ooxml.formato(run, "Times New Roman", 12, false);
 
         System.out.println("✏️ Párrafo actualizado con nuevo texto.");
     }
@@ -0,0 +1,127 @@
+package com.example.sistema_web.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Resultados de gráficos y reportes del dashboard en memoria, con vencimiento corto. Cada entrada declara de qué
+// datos depende (Origen); cuando un servicio publica Modificacion(origen), se descartan las entradas afectadas
+// después del commit. El vencimiento cubre lo que cambia sin pasar por los servicios (SQL manual, migraciones).
+@Component
+public class CacheDashboard {
+
+    public enum Origen { ASIGNACIONES, DOCUMENTOS, NOTIFICACIONES, EMPLEADOS }
+
+    // Evento que publican los servicios al crear, modificar o eliminar datos que alimentan los reportes
+    public record Modificacion(Origen origen) {
+    }
+
+    private record Entrada(Object valor, long vence, Set<Origen> origenes) {
+    }
+
+    private final Map<String, Entrada> entradas = new ConcurrentHashMap<>();
+    // Versión por origen: una carga que empezó antes de una invalidación no guarda su resultado (ya es viejo)
+    private final Map<Origen, AtomicLong> versiones = new EnumMap<>(Origen.class);
+
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong invalidaciones = new AtomicLong();
+    private final AtomicLong desalojos = new AtomicLong();
+
+    private final boolean habilitada;
+    private final long ttlMs;
+    private final int maxEntradas;
+
+    public CacheDashboard(@Value("${dashboard.cache.habilitada:true}") boolean habilitada,
+                         @Value("${dashboard.cache.ttl-segundos:60}") long ttlSegundos,
+                         @Value("${dashboard.cache.max-entradas:500}") int maxEntradas) {
+        this.habilitada = habilitada && ttlSegundos > 0;
+        this.ttlMs = ttlSegundos * 1000;
+        this.maxEntradas = Math.max(1, maxEntradas);
+        for (Origen origen : Origen.values()) versiones.put(origen, new AtomicLong());
+    }
+
+    // Devuelve el valor guardado bajo "clave" o lo calcula con "cargar". La clave debe incluir todos los parámetros.
+    @SuppressWarnings("unchecked")
+    public <T> T obtener(String clave, Set<Origen> dependeDe, Supplier<T> cargar) {
+        if (!habilitada) return cargar.get();
+
+        Entrada entrada = entradas.get(clave);
+        long ahora = System.currentTimeMillis();
+        if (entrada != null && entrada.vence() > ahora) {
+            aciertos.incrementAndGet();
+            return (T) entrada.valor();
+        }
+        fallos.incrementAndGet();
+
+        long[] versionInicial = versionesDe(dependeDe);
+        T valor = cargar.get();
+        if (valor == null) return null;
+
+        if (entradas.size() >= maxEntradas && !entradas.containsKey(clave)) hacerLugar(ahora);
+        Set<Origen> origenes = Set.copyOf(dependeDe);
+        // Comparar y guardar en un solo paso: invalidar() sube la versión antes de barrer las entradas, así que o
+        // acá ya se ve la versión nueva y no se guarda, o la entrada ya está y el barrido la quita
+        entradas.compute(clave, (k, actual) -> Arrays.equals(versionInicial, versionesDe(origenes))
+                ? new Entrada(valor, System.currentTimeMillis() + ttlMs, origenes)
+                : actual);
+        return valor;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificar(Modificacion modificacion) {
+        invalidar(modificacion.origen());
+    }
+
+    public void invalidar(Origen origen) {
+        versiones.get(origen).incrementAndGet();
+        if (entradas.entrySet().removeIf(e -> e.getValue().origenes().contains(origen))) {
+            invalidaciones.incrementAndGet();
+        }
+    }
+
+    public void limpiar() {
+        versiones.values().forEach(AtomicLong::incrementAndGet);
+        entradas.clear();
+        invalidaciones.incrementAndGet();
+    }
+
+    public Map<String, Object> estadisticas() {
+        long a = aciertos.get();
+        long f = fallos.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("habilitada", habilitada);
+        stats.put("ttlSegundos", ttlMs / 1000);
+        stats.put("entradas", entradas.size());
+        stats.put("maxEntradas", maxEntradas);
+        stats.put("aciertos", a);
+        stats.put("fallos", f);
+        stats.put("tasaAciertos", a + f == 0 ? 0.0 : Math.round(a * 1000.0 / (a + f)) / 1000.0);
+        stats.put("invalidaciones", invalidaciones.get());
+        stats.put("desalojos", desalojos.get());
+        return stats;
+    }
+
+    private long[] versionesDe(Set<Origen> origenes) {
+        long[] v = new long[Origen.values().length];
+        for (Origen origen : origenes) v[origen.ordinal()] = versiones.get(origen).get();
+        return v;
+    }
+
+    // Primero las vencidas; si no alcanza, la que vence antes
+    private void hacerLugar(long ahora) {
+        entradas.entrySet().removeIf(e -> e.getValue().vence() <= ahora);
+        while (entradas.size() >= maxEntradas) {
+            Optional<String> proxima = entradas.entrySet().stream()
+                    .min(Comparator.comparingLong(e -> e.getValue().vence()))
+                    .map(Map.Entry::getKey);
+            if (proxima.isEmpty() || entradas.remove(proxima.get()) == null) break;
+            desalojos.incrementAndGet();
+        }
+    }
+}
@@ -1,19 +1,26 @@
 package com.example.sistema_web.service;
 import com.example.sistema_web.dto.DocumentoDTO;
+import com.example.sistema_web.dto.FiltroListadoDTO;
+import com.example.sistema_web.dto.DocumentoResumenDTO;
+import com.example.sistema_web.dto.PaginaDTO;
+import com.example.sistema_web.onlyoffice.DestinoOnlyOffice;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-public interface DocumentoService {
+public interface DocumentoService extends DestinoOnlyOffice {
     DocumentoDTO crear(DocumentoDTO dto);
     DocumentoDTO obtenerPorId(Long id);
-    List<DocumentoDTO> listar();
+    List<DocumentoResumenDTO> listar();
+    PaginaDTO<DocumentoResumenDTO> listarPaginado(FiltroListadoDTO filtro);
     DocumentoDTO actualizar(Long id, DocumentoDTO dto);
     void eliminar(Long id);
-    byte[] obtenerContenidoArchivo(Long id);
-    void actualizarDesdeUrlOnlyOffice(Long id, String urlDescarga, Long empleadoId);
+    ArchivoDescarga obtenerArchivo(Long id);
     boolean existeDocumento(Long id);
     void uploadDocumento(Long id, byte[] archivoBytes);
     Long crearDocumentoVacio(Long empleadoId);
     void actualizarCampoEnWord(Long id, String tag, String valor);
     void actualizarTagEnWord(Long id, String tagBuscado, String nuevoValor);
+    Set<String> actualizarCamposEnWord(Long id, Map<String, String> campos);
     String obtenerNombreSugerido(Long id);
 }
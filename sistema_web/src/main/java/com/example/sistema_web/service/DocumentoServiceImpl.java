@@ -1,15 +1,23 @@
 package com.example.sistema_web.service;
 import com.example.sistema_web.config.JwtAuthFilter;
-import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTSdtContentRun;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.*;
 import com.example.sistema_web.dto.DocumentoDTO;
+import com.example.sistema_web.dto.FiltroListadoDTO;
+import com.example.sistema_web.dto.DocumentoResumenDTO;
+import com.example.sistema_web.dto.PaginaDTO;
 import com.example.sistema_web.model.Documento;
 import com.example.sistema_web.model.Empleado;
+import com.example.sistema_web.plantilla.Plantilla;
 import com.example.sistema_web.repository.DocumentoRepository;
 import com.example.sistema_web.repository.EmpleadoRepository;
+import com.example.sistema_web.word.ControlSdt;
+import com.example.sistema_web.word.ExtractorSdtStax;
+import com.example.sistema_web.word.IndiceTags;
+import com.example.sistema_web.word.Ooxml;
+import com.example.sistema_web.word.ParcheDocx;
 import lombok.RequiredArgsConstructor;
 import org.apache.poi.xwpf.usermodel.*;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.core.io.Resource;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -17,8 +25,8 @@ import org.springframework.web.server.ResponseStatusException;
 import java.io.ByteArrayOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.io.InputStream;
+import java.util.*;
 
 @Service
 @RequiredArgsConstructor
@@ -26,6 +34,11 @@ public class DocumentoServiceImpl implements DocumentoService {
 
     private final DocumentoRepository repository;
     private final EmpleadoRepository empleadoRepository;
+    private final ArchivoService archivoService;
+    private final ExtractorSdtStax extractorSdt;
+    private final ParcheDocx parcheDocx;
+    private final IndiceTags indiceTags;
+    private final ApplicationEventPublisher eventos;
 
     // ✅ 1. CREAR DOCUMENTO (Solo usado por botón Nuevo)
     @Override
@@ -38,6 +51,7 @@ public class DocumentoServiceImpl implements DocumentoService {
             doc.setEmpleado(emp);
         }
         Documento saved = repository.save(doc);
+        eventos.publishEvent(new CacheDashboard.Modificacion(CacheDashboard.Origen.DOCUMENTOS));
         return saved.getId();
     }
     // ✅ 2. VALIDAR EXISTENCIA (Sin crear nada)
@@ -48,18 +62,18 @@ public class DocumentoServiceImpl implements DocumentoService {
 
     // ✅ 3. OBTENER ARCHIVO (Si es nuevo, devuelve plantilla)
     @Override
-    public byte[] obtenerContenidoArchivo(Long id) {
+    public ArchivoDescarga obtenerArchivo(Long id) {
         Documento doc = repository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Documento no encontrado"));
 
-        // 1. Si ya tiene contenido guardado en la BD, devolverlo
-        if (doc.getArchivo() != null && doc.getArchivo().length > 0) {
-            return doc.getArchivo();
+        // 1. Si ya tiene contenido guardado en el BlobStore, se sirve desde ahí
+        if (archivoService.tieneArchivo(doc)) {
+            return archivoService.descargar(doc, null);
         }
 
         // 2. LÓGICA DE PLANTILLA BASADA EN EL DOCUMENTO
         // Por defecto usamos dosaje
-        String nombrePlantilla = "templates/informe_dosaje.docx";
+        Plantilla plantilla = Plantilla.INFORME_DOSAJE;
 
         // Verificamos el cargo del dueño del documento directamente
         if (doc.getEmpleado() != null && doc.getEmpleado().getCargo() != null) {
@@ -67,75 +81,64 @@ public class DocumentoServiceImpl implements DocumentoService {
 
             // Si el dueño (creador) es de Toxicología, USAR plantilla de Toxicología
             if (cargoDueño.contains("tox")) {
-                nombrePlantilla = "templates/informe_toxicologia.docx";
+                plantilla = Plantilla.INFORME_TOXICOLOGIA;
                 System.out.println("🧪 Cargando plantilla física de TOXICOLOGÍA para el Doc ID: " + id);
             } else {
                 System.out.println("🍷 Cargando plantilla física de DOSAJE para el Doc ID: " + id);
             }
         }
 
-        try {
-            Resource resource = new ClassPathResource(nombrePlantilla);
-            if (!resource.exists()) {
-                throw new RuntimeException("No se encontró el archivo .docx en: " + nombrePlantilla);
-            }
-            return resource.getInputStream().readAllBytes();
-        } catch (IOException e) {
-            throw new RuntimeException("Error al leer la plantilla física", e);
-        }
+        return archivoService.descargar(doc, plantilla);
     }
 
-    // ✅ 4. GUARDAR DESDE ONLYOFFICE (Con extracción de datos)
+    // ✅ 4. GUARDAR DESDE ONLYOFFICE (lo invoca el CallbackPipeline fuera del hilo HTTP)
     @Override
-    @Transactional
-    public void actualizarDesdeUrlOnlyOffice(Long id, String urlDescarga, Long empleadoId) {
-        if (urlDescarga.contains("onlyoffice_pruebas")) {
-            urlDescarga = urlDescarga.replace("onlyoffice_pruebas", "localhost:9000");
-        } else if (urlDescarga.contains("onlyoffice_server")) {
-            urlDescarga = urlDescarga.replace("onlyoffice_server", "localhost:9000");
-        }
-
-        System.out.println("⬇️ Descargando cambios desde OnlyOffice: " + urlDescarga);
-
-        try {
-            java.net.URL url = new java.net.URL(urlDescarga);
-            byte[] archivoBytes;
-
-            // Usamos HttpURLConnection para un mejor manejo de flujos de red en Docker
-            java.net.HttpURLConnection connection = (java.net.HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-
-            try (java.io.InputStream in = connection.getInputStream()) {
-                archivoBytes = in.readAllBytes();
-            }
-
-            Documento doc = repository.findById(id).orElseThrow(() ->
-                    new RuntimeException("Documento no encontrado con ID: " + id)
-            );
+    public String nombreDestino() {
+        return "Documento";
+    }
 
-            // ✅ Guardamos el arreglo de bytes (LONGBLOB) en la entidad
-            doc.setArchivo(archivoBytes);
+    @Override
+    public String hashActual(Long id) {
+        Documento doc = repository.findById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Documento no encontrado con ID: " + id));
+        return archivoService.resolverHash(doc);
+    }
 
-            if (empleadoId != null) {
-                Empleado empleado = empleadoRepository.findById(empleadoId).orElse(null);
-                if (empleado != null) doc.setEmpleado(empleado);
-            }
+    // Primero el extractor StAX (sin DOM); POI queda como respaldo si el XML no se puede recorrer
+    @Override
+    public Map<String, String> extraerCampos(String hash) {
+        try (InputStream in = archivoService.abrir(hash)) {
+            Map<String, String> campos = extractorSdt.extraer(in);
+            System.out.println("✅ Controles leídos del Word (StAX): " + campos.keySet());
+            return campos;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("⚠️ Extractor StAX falló (" + e.getMessage() + "), se usa POI");
+            return extraerMetadatosDelWord(archivoService.leer(hash));
+        }
+    }
 
-            extraerMetadatosDelWord(archivoBytes, doc);
+    @Override
+    @Transactional
+    public void aplicarArchivo(Long id, String hash, Map<String, String> campos, Long empleadoId) {
+        Documento doc = repository.findById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Documento no encontrado con ID: " + id));
 
-            // Guardamos los cambios en la BD MySQL
-            repository.save(doc);
-            System.out.println("✅ ¡ARCHIVO GUARDADO EXITOSAMENTE EN MYSQL! Tamaño: " + archivoBytes.length + " bytes.");
+        // ✅ El archivo ya está en el BlobStore: la entidad solo guarda su hash
+        doc.setArchivoHash(hash);
 
-        } catch (Exception e) {
-            System.err.println("❌ Error crítico en el guardado: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Error al guardar archivo: " + e.getMessage(), e);
+        if (empleadoId != null) {
+            Empleado empleado = empleadoRepository.findById(empleadoId).orElse(null);
+            if (empleado != null) doc.setEmpleado(empleado);
         }
+
+        campos.forEach((tag, valor) -> asignarValor(doc, tag, valor));
+        repository.save(doc);
+        eventos.publishEvent(new CacheDashboard.Modificacion(CacheDashboard.Origen.DOCUMENTOS));
     }
 
     // --- MÉTODOS PRIVADOS DE EXTRACCIÓN (APACHE POI) ---
-    private void extraerMetadatosDelWord(byte[] archivo, Documento doc) { // 1. Aquí recibes 'doc'
+    private Map<String, String> extraerMetadatosDelWord(byte[] archivo) {
+        Map<String, String> campos = new LinkedHashMap<>();
 
         // 2. Creamos el flujo de lectura (esto corrige el error 'cannot find symbol bis')
         ByteArrayInputStream bis = new ByteArrayInputStream(archivo);
@@ -144,7 +147,7 @@ public class DocumentoServiceImpl implements DocumentoService {
 
             // A. LEER PÁRRAFOS SUELTOS
             for (XWPFParagraph paragraph : document.getParagraphs()) {
-                procesarParrafo(paragraph, doc); // Usamos 'doc'
+                procesarParrafo(paragraph, campos);
             }
 
             // B. LEER DENTRO DE LAS TABLAS (Aquí estaba el error)
@@ -155,7 +158,7 @@ public class DocumentoServiceImpl implements DocumentoService {
                         for (XWPFTableCell cell : row.getTableCells()) {
 
                             for (XWPFParagraph paragraph : cell.getParagraphs()) {
-                                procesarParrafo(paragraph, doc); // Usamos 'doc'
+                                procesarParrafo(paragraph, campos);
                             }
                         }
                     }
@@ -167,9 +170,10 @@ public class DocumentoServiceImpl implements DocumentoService {
         } catch (IOException e) {
             System.err.println("⚠️ Error leyendo el Word para extracción: " + e.getMessage());
         }
+        return campos;
     }
 
-    private void procesarParrafo(XWPFParagraph paragraph, Documento doc) {
+    private void procesarParrafo(XWPFParagraph paragraph, Map<String, String> campos) {
         // 1. Imprimir todo el texto crudo del párrafo para ver si Java lee algo
         String textoCompleto = paragraph.getText();
         if (textoCompleto != null && !textoCompleto.isEmpty()) {
@@ -189,7 +193,7 @@ public class DocumentoServiceImpl implements DocumentoService {
                     System.out.println("      - Contenido: " + text);
 
                     if (tag != null && text != null && !text.trim().isEmpty()) {
-                        asignarValor(doc, tag, text.trim());
+                        campos.put(tag, text.trim());
                     }
                 }
                 // 3. Verificar si es un texto normal (no control)
@@ -223,6 +227,7 @@ public class DocumentoServiceImpl implements DocumentoService {
     public DocumentoDTO crear(DocumentoDTO dto) {
         Documento doc = mapToEntity(dto);
         Documento saved = repository.save(doc);
+        eventos.publishEvent(new CacheDashboard.Modificacion(CacheDashboard.Origen.DOCUMENTOS));
         return mapToDTO(saved);
     }
 
@@ -234,32 +239,48 @@ public class DocumentoServiceImpl implements DocumentoService {
     }
 
     @Override
-    public List<DocumentoDTO> listar() {
+    public List<DocumentoResumenDTO> listar() {
         Long idLogueado = JwtAuthFilter.getCurrentEmpleadoId();
 
         // Si es el usuario Admin global (ID nulo o cargo admin)
         if (idLogueado == null) {
             System.out.println("👑 Acceso SuperAdmin: Listando todo.");
-            return repository.findAll().stream().map(this::mapToDTO).collect(Collectors.toList());
+            return repository.findResumenes();
         }
 
         Empleado empLogueado = empleadoRepository.findById(idLogueado).orElse(null);
         if (empLogueado == null) return List.of();
 
         String cargo = empLogueado.getCargo().toLowerCase();
-        List<Documento> misDocumentos;
 
         // Regla para Químicos y Administradores de tabla
         if (cargo.contains("admin") || cargo.contains("quimico")) {
-            misDocumentos = repository.findAll();
-        } else {
-            misDocumentos = repository.findByEmpleadoId(idLogueado);
+            return repository.findResumenes();
         }
+        return repository.findResumenesByEmpleadoId(idLogueado);
+    }
 
-        return misDocumentos.stream()
-                .map(this::mapToDTO)
-                .sorted((a, b) -> b.getId().compareTo(a.getId()))
-                .collect(Collectors.toList());
+    @Override
+    public PaginaDTO<DocumentoResumenDTO> listarPaginado(FiltroListadoDTO filtro) {
+        Long idLogueado = JwtAuthFilter.getCurrentEmpleadoId();
+        Long empleadoId = filtro.peritoId();
+
+        // Misma regla que listar(): fuera de admin/químico cada perito solo ve sus propios documentos
+        if (idLogueado != null) {
+            Empleado empLogueado = empleadoRepository.findById(idLogueado).orElse(null);
+            if (empLogueado == null) return new PaginaDTO<>(List.of(), null);
+
+            String cargo = empLogueado.getCargo().toLowerCase();
+            if (!cargo.contains("admin") && !cargo.contains("quimico")) {
+                if (empleadoId != null && !empleadoId.equals(idLogueado)) return new PaginaDTO<>(List.of(), null);
+                empleadoId = idLogueado;
+            }
+        }
+
+        List<DocumentoResumenDTO> filas = repository.findPagina(filtro.cursor(), empleadoId,
+                filtro.dniNormalizado(), filtro.desdeInicio(), filtro.hastaFin(), filtro.edadMin(), filtro.edadMax(),
+                filtro.cuantitativoMin(), filtro.cuantitativoMax(), filtro.ventana());
+        return PaginaDTO.de(filas, filtro.limiteEfectivo(), DocumentoResumenDTO::id);
     }
 
     @Override
@@ -277,14 +298,17 @@ public class DocumentoServiceImpl implements DocumentoService {
         doc.setProcedencia(dto.getProcedencia());
         doc.setTipoMuestra(dto.getTipoMuestra());
         doc.setPersonaQueConduce(dto.getPersonaQueConduce());
-        doc.setArchivo(dto.getArchivo());
 
         if (dto.getEmpleadoId() != null) {
             var empleado = empleadoRepository.findById(dto.getEmpleadoId())
                     .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Empleado no encontrado"));
             doc.setEmpleado(empleado);
         }
-        return mapToDTO(repository.save(doc));
+        // El archivo se escribe recién cuando todo lo referenciado existe: un 404 no deja blobs sueltos
+        if (dto.getArchivo() != null) archivoService.guardar(doc, dto.getArchivo());
+        Documento actualizado = repository.save(doc);
+        eventos.publishEvent(new CacheDashboard.Modificacion(CacheDashboard.Origen.DOCUMENTOS));
+        return mapToDTO(actualizado);
     }
 
     @Override
@@ -293,12 +317,14 @@ public class DocumentoServiceImpl implements DocumentoService {
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, "ID no encontrado");
         }
         repository.deleteById(id);
+        eventos.publishEvent(new CacheDashboard.Modificacion(CacheDashboard.Origen.DOCUMENTOS));
     }
 
     @Override
     public void uploadDocumento(Long id, byte[] archivoBytes) {
-        Documento doc = repository.findById(id).orElseThrow();
-        doc.setArchivo(archivoBytes);
+        Documento doc = repository.findById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Documento no encontrado con ID: " + id));
+        archivoService.guardar(doc, archivoBytes);
         repository.save(doc);
     }
 
@@ -316,7 +342,6 @@ public class DocumentoServiceImpl implements DocumentoService {
         dto.setProcedencia(doc.getProcedencia());
         dto.setTipoMuestra(doc.getTipoMuestra());
         dto.setPersonaQueConduce(doc.getPersonaQueConduce());
-        dto.setArchivo(doc.getArchivo());
         dto.setEmpleadoId(doc.getEmpleado() != null ? doc.getEmpleado().getId() : null);
         return dto;
     }
@@ -332,220 +357,156 @@ public class DocumentoServiceImpl implements DocumentoService {
                 .nombreOficio(dto.getNombreOficio())
                 .procedencia(dto.getProcedencia())
                 .tipoMuestra(dto.getTipoMuestra())
-                .personaQueConduce(dto.getPersonaQueConduce())
-                .archivo(dto.getArchivo());
+                .personaQueConduce(dto.getPersonaQueConduce());
 
         if (dto.getEmpleadoId() != null) {
             var empleado = empleadoRepository.findById(dto.getEmpleadoId()).orElseThrow();
             builder.empleado(empleado);
         }
-        return builder.build();
+        Documento doc = builder.build();
+        if (dto.getArchivo() != null) archivoService.guardar(doc, dto.getArchivo());
+        return doc;
     }
     @Override
     @Transactional
     public void actualizarCampoEnWord(Long id, String tag, String valor) {
-        try {
-            // 1. Obtener el documento de la BD
-            Documento doc = repository.findById(id).orElseThrow(() ->
-                    new RuntimeException("Documento no encontrado"));
+        actualizarCamposEnWord(id, Collections.singletonMap(tag, valor));
+    }
 
-            if (doc.getArchivo() == null) return;
+    @Override
+    @Transactional
+    public void actualizarTagEnWord(Long id, String tagBuscado, String nuevoValor) {
+        actualizarCamposEnWord(id, Collections.singletonMap(tagBuscado, nuevoValor));
+    }
 
-            // 2. Abrir el archivo Word en memoria
-            try (ByteArrayInputStream bis = new ByteArrayInputStream(doc.getArchivo());
-                 XWPFDocument document = new XWPFDocument(bis);
-                 ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
+    // Aplica todos los campos con una sola lectura del .docx y una sola escritura. Por cada tag se reemplaza el
+    // contenido de los controles SDT con ese tag y los marcadores {{TAG}} del texto; las columnas del Documento
+    // se actualizan en la misma transacción. Devuelve los tags que quedaron aplicados en el Word.
+    @Override
+    @Transactional
+    public Set<String> actualizarCamposEnWord(Long id, Map<String, String> campos) {
+        Documento doc = repository.findById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Documento no encontrado"));
 
+        // Tag en mayúsculas → tag tal como vino (para armar el marcador {{TAG}} igual que antes)
+        Map<String, String> pendientes = new LinkedHashMap<>();
+        Map<String, String> porTag = new HashMap<>();
+        campos.forEach((tag, valor) -> {
+            if (tag == null || tag.isBlank()) return;
+            String limpio = tag.trim();
+            pendientes.put(limpio, valor == null ? "" : valor);
+            porTag.put(limpio.toUpperCase(), limpio);
+        });
+        if (pendientes.isEmpty()) return Set.of();
+
+        byte[] archivo = archivoService.leer(doc);
+        if (archivo == null) return Set.of();
+        String hashArchivo = archivoService.resolverHash(doc);
+
+        Set<String> encontrados = new LinkedHashSet<>();
+        byte[] editado;
+        try {
+            // Solo se reescribe word/document.xml; imágenes y demás partes se copian sin recomprimir
+            editado = parcheDocx.editarDocumento(archivo, documento -> {
+                List<CTP> parrafos = Ooxml.parrafosEditables(documento.getBody());
                 boolean cambiado = false;
 
-                // 3. Buscar y reemplazar en Párrafos
-                for (XWPFParagraph p : document.getParagraphs()) {
-                    if (reemplazarEnParrafo(p, tag, valor)) cambiado = true;
-                }
-
-                // 4. Buscar y reemplazar en Tablas
-                for (XWPFTable tbl : document.getTables()) {
-                    for (XWPFTableRow row : tbl.getRows()) {
-                        for (XWPFTableCell cell : row.getTableCells()) {
-                            for (XWPFParagraph p : cell.getParagraphs()) {
-                                if (reemplazarEnParrafo(p, tag, valor)) cambiado = true;
-                            }
+                // 1. Controles SDT con ese tag, sean en línea, de bloque o de celda
+                for (ControlSdt control : indiceTags.controles(hashArchivo, documento.getBody(), porTag.keySet())) {
+                    String tag = control.tag() == null ? null : porTag.get(control.tag().toUpperCase());
+                    if (tag == null || !control.vigente()) continue;
+                    String valor = pendientes.get(tag);
+                    try {
+                        if (!valor.equals(control.texto())) {
+                            control.escribir(valor);
+                            cambiado = true;
+                            System.out.println("✏️ Campo SDT '" + tag + "' (" + control.getNivel() + ") actualizado a: " + valor);
                         }
+                        encontrados.add(tag);
+                    } catch (IllegalStateException e) {
+                        System.err.println("❌ No se pudo escribir el control '" + tag + "': " + e.getMessage());
                     }
                 }
 
-                // 5. Si hubo cambios, guardar el nuevo archivo en la BD
-                if (cambiado) {
-                    document.write(bos);
-                    doc.setArchivo(bos.toByteArray());
-
-                    // También actualizamos el campo en la entidad SQL para consistencia
-                    if (tag.equalsIgnoreCase("CUANTITATIVO")) {
-                        doc.setCuantitativo(valor);
-                    }
-
-                    repository.save(doc);
-                    System.out.println("✅ Campo '" + tag + "' actualizado a: " + valor);
-                } else {
-                    System.out.println("⚠️ No se encontró la etiqueta: " + tag);
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            throw new RuntimeException("Error editando Word: " + e.getMessage());
-        }
-    }
-    private boolean reemplazarEnParrafo(XWPFParagraph p, String tagBuscado, String nuevoValor) {
-        boolean encontrado = false;
-
-        for (IRunElement run : p.getIRuns()) {
-            if (run instanceof XWPFSDT) {
-                XWPFSDT sdt = (XWPFSDT) run;
-
-                if (sdt.getTag() != null && sdt.getTag().equalsIgnoreCase(tagBuscado)) {
-                    try {
-                        // ✅ SOLUCIÓN DEFINITIVA MEDIANTE REFLEXIÓN
-                        // Accedemos al campo privado 'ctSdt' que contiene el XML
-                        java.lang.reflect.Field field = sdt.getClass().getDeclaredField("ctSdt");
-                        field.setAccessible(true);
-                        Object ctSdt = field.get(sdt);
-
-                        // El objeto ctSdt suele ser CTSdtRun o CTSdtBlock
-                        // Usamos reflexión para obtener el SdtContent
-                        java.lang.reflect.Method getSdtContent = ctSdt.getClass().getMethod("getSdtContent");
-                        Object sdtContent = getSdtContent.invoke(ctSdt);
-
-                        // Obtenemos el objeto CTSdtContentRun para manipular los nodos de texto
-                        if (sdtContent instanceof org.openxmlformats.schemas.wordprocessingml.x2006.main.CTSdtContentRun) {
-                            org.openxmlformats.schemas.wordprocessingml.x2006.main.CTSdtContentRun xmlContent =
-                                    (org.openxmlformats.schemas.wordprocessingml.x2006.main.CTSdtContentRun) sdtContent;
-
-                            // 1. Limpiamos cualquier texto previo (nodos <w:r>)
-                            int size = xmlContent.sizeOfRArray();
-                            for (int i = size - 1; i >= 0; i--) {
-                                xmlContent.removeR(i);
-                            }
-
-                            // 2. Creamos un nuevo nodo de texto con el valor
-                            xmlContent.addNewR().addNewT().setStringValue(nuevoValor);
-                            encontrado = true;
-                            System.out.println("✏️ Campo SDT '" + tagBuscado + "' actualizado mediante reflexión a: " + nuevoValor);
-                        }
-
-                    } catch (Exception e) {
-                        // 🛠️ SEGUNDO INTENTO: Si la reflexión falla, intentamos mediante la interfaz de contenido
-                        try {
-                            sdt.getContent().getText(); // Solo para verificar acceso
-                            // Si tu versión de POI lo permite, se puede intentar manipular los párrafos internos de sdt.getContent()
-                            System.err.println("⚠️ Falló reflexión, intentando vía alternativa...");
-                        } catch (Exception e2) {
-                            System.err.println("❌ Error total actualizando el Word: " + e.getMessage());
-                        }
+                // 2. Marcadores {{TAG}} en el texto de párrafos y celdas
+                for (CTP p : parrafos) {
+                    for (CTR r : Ooxml.runs(p)) {
+                        if (reemplazarMarcadores(r, pendientes, encontrados)) cambiado = true;
                     }
                 }
-            }
-        }
-        return encontrado;
-    }
-    @Override
-    @Transactional
-    public void actualizarTagEnWord(Long id, String tagBuscado, String nuevoValor) {
-        String marcadorEtiqueta = "{{" + tagBuscado + "}}";
 
-        try {
-            Documento doc = repository.findById(id)
-                    .orElseThrow(() -> new RuntimeException("Documento no encontrado"));
-
-            if (doc.getArchivo() == null) return;
+                // 3. Respaldo: si la etiqueta ya desapareció del texto, se busca el valor anterior guardado en la BD
+                for (String tag : pendientes.keySet()) {
+                    if (encontrados.contains(tag) || !tag.equalsIgnoreCase("CUANTITATIVO")) continue;
+                    String valorAntiguo = doc.getCuantitativo();
+                    String nuevoValor = pendientes.get(tag);
+                    if (valorAntiguo == null || valorAntiguo.isEmpty() || valorAntiguo.equals(nuevoValor)) continue;
 
-            // 1. OBTENER EL VALOR ANTIGUO DE LA BASE DE DATOS
-            // Esto nos sirve para buscarlo si la etiqueta {{...}} ya desapareció.
-            String valorAntiguo = null;
-            if (tagBuscado.equalsIgnoreCase("CUANTITATIVO")) {
-                valorAntiguo = doc.getCuantitativo(); // Ej: "0.50"
-            }
-
-            // Evitar trabajar si el valor no cambia
-            if (nuevoValor.equals(valorAntiguo)) {
-                System.out.println("ℹ️ El valor nuevo es igual al actual. No se realizan cambios.");
-                return;
-            }
-
-            try (ByteArrayInputStream bis = new ByteArrayInputStream(doc.getArchivo());
-                 XWPFDocument document = new XWPFDocument(bis);
-                 ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
-
-                boolean cambiado = false;
-
-                // --- INTENTO 1: BUSCAR LA ETIQUETA {{TAG}} ---
-                if (buscarYReemplazarEnTodoElDoc(document, marcadorEtiqueta, nuevoValor)) {
-                    cambiado = true;
-                    System.out.println("✅ Se reemplazó la etiqueta original: " + marcadorEtiqueta);
-                }
-                // --- INTENTO 2: SI NO ESTÁ LA ETIQUETA, BUSCAR EL VALOR ANTIGUO ---
-                else if (valorAntiguo != null && !valorAntiguo.isEmpty()) {
                     System.out.println("⚠️ Etiqueta no encontrada. Buscando valor antiguo: '" + valorAntiguo + "'");
-
-                    // Buscamos textualmente el número viejo (ej: "0.50") y lo cambiamos por el nuevo
-                    if (buscarYReemplazarEnTodoElDoc(document, valorAntiguo, nuevoValor)) {
+                    boolean reemplazado = false;
+                    for (CTP p : parrafos) {
+                        if (reemplazarTextoEnParrafo(p, valorAntiguo, nuevoValor)) reemplazado = true;
+                    }
+                    if (reemplazado) {
+                        encontrados.add(tag);
                         cambiado = true;
                         System.out.println("✅ Se actualizó el valor antiguo '" + valorAntiguo + "' por '" + nuevoValor + "'");
                     }
                 }
-
-                if (cambiado) {
-                    document.write(bos);
-                    doc.setArchivo(bos.toByteArray());
-
-                    // Actualizar DB
-                    if (tagBuscado.equalsIgnoreCase("CUANTITATIVO")) {
-                        doc.setCuantitativo(nuevoValor);
-                    }
-
-                    repository.save(doc);
-                } else {
-                    System.err.println("❌ No se pudo actualizar. No se encontró ni '" + marcadorEtiqueta + "' ni el valor antiguo '" + valorAntiguo + "'");
-                }
-            }
-        } catch (Exception e) {
-            throw new RuntimeException("Error editando Word: " + e.getMessage());
+                return cambiado;
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Error editando Word: " + e.getMessage(), e);
+        }
+        if (editado != null) {
+            archivoService.guardar(doc, editado);
+            // La próxima edición parte del archivo nuevo: que encuentre el índice bajo su hash
+            indiceTags.trasladar(hashArchivo, doc.getArchivoHash());
         }
-    }
 
-    // 👇 MÉTODO HELPER PARA NO REPETIR CÓDIGO (Busca en Párrafos y Tablas)
-    private boolean buscarYReemplazarEnTodoElDoc(XWPFDocument document, String buscado, String reemplazo) {
-        boolean encontrado = false;
+        // 4. Columnas SQL de los campos que quedaron en el Word
+        for (String tag : encontrados) {
+            asignarValor(doc, tag, pendientes.get(tag));
+        }
+        if (!encontrados.isEmpty()) {
+            repository.save(doc);
+            eventos.publishEvent(new CacheDashboard.Modificacion(CacheDashboard.Origen.DOCUMENTOS));
+        }
 
-        // 1. Párrafos normales
-        for (XWPFParagraph p : document.getParagraphs()) {
-            if (reemplazarTextoEnParrafo(p, buscado, reemplazo)) encontrado = true;
+        for (String tag : pendientes.keySet()) {
+            if (!encontrados.contains(tag)) System.out.println("⚠️ No se encontró la etiqueta: " + tag);
         }
+        System.out.println("✅ Word del documento " + id + " actualizado: " + encontrados.size() + "/"
+                + pendientes.size() + " campos" + (editado != null ? "" : " (sin cambios en el archivo)"));
+        return encontrados;
+    }
 
-        // 2. Tablas
-        for (XWPFTable table : document.getTables()) {
-            for (XWPFTableRow row : table.getRows()) {
-                for (XWPFTableCell cell : row.getTableCells()) {
-                    for (XWPFParagraph p : cell.getParagraphs()) {
-                        if (reemplazarTextoEnParrafo(p, buscado, reemplazo)) encontrado = true;
-                    }
-                }
+    // Reemplaza en el run todos los {{TAG}} pendientes que contenga
+    private boolean reemplazarMarcadores(CTR r, Map<String, String> pendientes, Set<String> encontrados) {
+        String text = Ooxml.primerTexto(r);
+        if (text == null || !text.contains("{{")) return false;
+
+        String original = text;
+        for (Map.Entry<String, String> campo : pendientes.entrySet()) {
+            String marcador = "{{" + campo.getKey() + "}}";
+            if (text.contains(marcador)) {
+                text = text.replace(marcador, campo.getValue());
+                encontrados.add(campo.getKey());
+                System.out.println("✅ Se reemplazó la etiqueta original: " + marcador);
             }
         }
-        return encontrado;
+        if (text.equals(original)) return false;
+        Ooxml.fijarTexto(r, text);
+        return true;
     }
 
-    private boolean reemplazarTextoEnParrafo(XWPFParagraph p, String marcador, String nuevoValor) {
+    private boolean reemplazarTextoEnParrafo(CTP p, String marcador, String nuevoValor) {
         boolean encontrado = false;
-        List<XWPFRun> runs = p.getRuns();
-
-        if (runs != null) {
-            for (XWPFRun r : runs) {
-                String text = r.getText(0);
-                if (text != null && text.contains(marcador)) {
-                    text = text.replace(marcador, nuevoValor);
-                    r.setText(text, 0);
-                    encontrado = true;
-                }
+        for (CTR r : Ooxml.runs(p)) {
+            String text = Ooxml.primerTexto(r);
+            if (text != null && text.contains(marcador)) {
+                Ooxml.fijarTexto(r, text.replace(marcador, nuevoValor));
+                encontrado = true;
             }
         }
         return encontrado;
@@ -7,6 +7,7 @@ import com.example.sistema_web.model.Usuario;
 import com.example.sistema_web.repository.EmpleadoRepository;
 import com.example.sistema_web.repository.UsuarioRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -23,6 +24,10 @@ public class EmpleadoServiceImpl implements EmpleadoService {
     @Autowired
     private UsuarioRepository usuarioRepository;
 
+    // Los reportes muestran nombres y el total de empleados
+    @Autowired
+    private ApplicationEventPublisher eventos;
+
     @Override
     public List<EmpleadoDTO> getAllEmpleados() {
         return empleadoRepository.findAll().stream()
@@ -60,6 +65,7 @@ public class EmpleadoServiceImpl implements EmpleadoService {
         empleado.setUsuario(usuario);
 
         Empleado savedEmpleado = empleadoRepository.save(empleado);
+        eventos.publishEvent(new CacheDashboard.Modificacion(CacheDashboard.Origen.EMPLEADOS));
         return convertToDTO(savedEmpleado);
     }
 
@@ -87,6 +93,7 @@ public class EmpleadoServiceImpl implements EmpleadoService {
         }
 
         Empleado updatedEmpleado = empleadoRepository.save(empleado);
+        eventos.publishEvent(new CacheDashboard.Modificacion(CacheDashboard.Origen.EMPLEADOS));
         return convertToDTO(updatedEmpleado);
     }
 
@@ -96,6 +103,7 @@ public class EmpleadoServiceImpl implements EmpleadoService {
             throw new RuntimeException("Empleado no encontrado con ID: " + id);
         }
         empleadoRepository.deleteById(id);
+        eventos.publishEvent(new CacheDashboard.Modificacion(CacheDashboard.Origen.EMPLEADOS));
     }
 
     @Override
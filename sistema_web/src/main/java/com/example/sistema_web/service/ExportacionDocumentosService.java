@@ -0,0 +1,206 @@
+package com.example.sistema_web.service;
+
+import com.example.sistema_web.config.JwtAuthFilter;
+import com.example.sistema_web.dto.ArchivoExportacionDTO;
+import com.example.sistema_web.dto.DocumentoExportacionDTO;
+import com.example.sistema_web.model.Empleado;
+import com.example.sistema_web.repository.DocumentoRepository;
+import com.example.sistema_web.repository.EmpleadoRepository;
+import com.example.sistema_web.repository.OficioDosajeRepository;
+import com.example.sistema_web.repository.OficioToxicologiaRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Exportación de documentos (y sus oficios) en un ZIP. La selección —con las reglas de visibilidad de listar()—
+// se resuelve en el hilo de la petición; después solo se copian blobs del almacenamiento a la respuesta, uno
+// detrás de otro, sin cargarlos enteros en memoria.
+@Service
+public class ExportacionDocumentosService {
+
+    private final DocumentoRepository documentoRepository;
+    private final EmpleadoRepository empleadoRepository;
+    private final OficioDosajeRepository oficioDosajeRepository;
+    private final OficioToxicologiaRepository oficioToxicologiaRepository;
+    private final ArchivoService archivoService;
+    private final int maxDocumentos;
+
+    public ExportacionDocumentosService(DocumentoRepository documentoRepository,
+                                        EmpleadoRepository empleadoRepository,
+                                        OficioDosajeRepository oficioDosajeRepository,
+                                        OficioToxicologiaRepository oficioToxicologiaRepository,
+                                        ArchivoService archivoService,
+                                        @Value("${documentos.exportacion.max-documentos:1000}") int maxDocumentos) {
+        this.documentoRepository = documentoRepository;
+        this.empleadoRepository = empleadoRepository;
+        this.oficioDosajeRepository = oficioDosajeRepository;
+        this.oficioToxicologiaRepository = oficioToxicologiaRepository;
+        this.archivoService = archivoService;
+        this.maxDocumentos = Math.max(1, maxDocumentos);
+    }
+
+    // Lo que va dentro del ZIP, ya resuelto; escribir() no vuelve a tocar la base de datos
+    public record Exportacion(List<DocumentoExportacionDTO> documentos,
+                              Map<Long, String> hashDocumentos,
+                              List<ArchivoExportacionDTO> oficiosDosaje,
+                              List<ArchivoExportacionDTO> oficiosToxicologia) {
+    }
+
+    public Exportacion preparar(List<Long> ids, LocalDate desde, LocalDate hasta) {
+        boolean porIds = ids != null && !ids.isEmpty();
+        if (!porIds && desde == null && hasta == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Indique ids o un rango de fechas (from / to)");
+        }
+
+        // Misma regla que listar(): admin y químicos exportan todo, el resto solo sus documentos
+        Long empleadoId = null;
+        Long idLogueado = JwtAuthFilter.getCurrentEmpleadoId();
+        if (idLogueado != null) {
+            Empleado empLogueado = empleadoRepository.findById(idLogueado).orElse(null);
+            if (empLogueado == null) return new Exportacion(List.of(), Map.of(), List.of(), List.of());
+
+            String cargo = empLogueado.getCargo().toLowerCase();
+            if (!cargo.contains("admin") && !cargo.contains("quimico")) empleadoId = idLogueado;
+        }
+
+        List<DocumentoExportacionDTO> documentos;
+        if (porIds) {
+            List<Long> unicos = ids.stream().filter(Objects::nonNull).distinct().toList();
+            if (unicos.size() > maxDocumentos) throw demasiados();
+            documentos = documentoRepository.findExportacionPorIds(unicos, empleadoId);
+        } else {
+            documentos = documentoRepository.findExportacionPorFechas(empleadoId,
+                    desde != null ? desde.atStartOfDay() : null,
+                    hasta != null ? hasta.plusDays(1).atStartOfDay() : null,
+                    PageRequest.of(0, maxDocumentos + 1));
+            if (documentos.size() > maxDocumentos) throw demasiados();
+        }
+
+        // Filas que todavía tienen el Word en la columna antigua: se migran ahora para poder copiarlas
+        Map<Long, String> hashes = new HashMap<>();
+        for (DocumentoExportacionDTO doc : documentos) {
+            String hash = doc.archivoHash();
+            if (hash == null) {
+                hash = documentoRepository.findById(doc.id()).map(archivoService::resolverHash).orElse(null);
+            }
+            if (hash != null) hashes.put(doc.id(), hash);
+        }
+
+        List<Long> documentoIds = documentos.stream().map(DocumentoExportacionDTO::id).toList();
+        List<ArchivoExportacionDTO> dosajes = documentoIds.isEmpty() ? List.of()
+                : oficioDosajeRepository.findArchivosPorDocumentos(documentoIds);
+        List<ArchivoExportacionDTO> toxicologias = documentoIds.isEmpty() ? List.of()
+                : oficioToxicologiaRepository.findArchivosPorDocumentos(documentoIds);
+
+        return new Exportacion(documentos, hashes, dosajes, toxicologias);
+    }
+
+    public void escribir(Exportacion exportacion, OutputStream salida) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(salida, StandardCharsets.UTF_8);
+
+        // 1. Manifest primero: ya se conoce entero y el cliente lo ve aunque la descarga se corte
+        zip.setLevel(Deflater.DEFAULT_COMPRESSION);
+        zip.putNextEntry(new ZipEntry("manifest.csv"));
+        escribirManifest(exportacion, zip);
+        zip.closeEntry();
+
+        // 2. Los .docx ya vienen comprimidos: volver a comprimirlos solo gasta CPU
+        zip.setLevel(Deflater.NO_COMPRESSION);
+        int copiados = 0;
+        for (DocumentoExportacionDTO doc : exportacion.documentos()) {
+            String hash = exportacion.hashDocumentos().get(doc.id());
+            if (hash != null && copiar(zip, "documentos/" + rutaDocumento(doc), hash)) copiados++;
+        }
+        for (ArchivoExportacionDTO oficio : exportacion.oficiosDosaje()) {
+            if (oficio.archivoHash() != null && copiar(zip, "oficios-dosaje/" + rutaOficio(oficio), oficio.archivoHash())) copiados++;
+        }
+        for (ArchivoExportacionDTO oficio : exportacion.oficiosToxicologia()) {
+            if (oficio.archivoHash() != null && copiar(zip, "oficios-toxicologia/" + rutaOficio(oficio), oficio.archivoHash())) copiados++;
+        }
+        zip.finish();
+        System.out.println("📦 Exportación ZIP: " + exportacion.documentos().size() + " documentos, " + copiados + " archivos");
+    }
+
+    private boolean copiar(ZipOutputStream zip, String nombre, String hash) throws IOException {
+        InputStream in;
+        try {
+            in = archivoService.abrir(hash);
+        } catch (IOException e) {
+            // Un blob faltante no debe cortar toda la exportación
+            System.err.println("⚠️ No se pudo leer " + nombre + " (hash " + hash.substring(0, 12) + "): " + e.getMessage());
+            return false;
+        }
+        try (in) {
+            zip.putNextEntry(new ZipEntry(nombre));
+            in.transferTo(zip);
+            zip.closeEntry();
+        }
+        return true;
+    }
+
+    private void escribirManifest(Exportacion exportacion, OutputStream zip) throws IOException {
+        Map<Long, String> dosajes = idsPorDocumento(exportacion.oficiosDosaje());
+        Map<Long, String> toxicologias = idsPorDocumento(exportacion.oficiosToxicologia());
+
+        // Sin cerrar: cerrar el writer cerraría también el ZIP
+        Writer csv = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+        csv.write('\uFEFF'); // BOM para que Excel respete las tildes
+        csv.write("id,fecha_ingreso,nombresyapellidos,dni,edad,cualitativo,cuantitativo,numero_informe,nombre_oficio,"
+                + "procedencia,tipo_muestra,persona_que_conduce,empleado_id,archivo,oficios_dosaje,oficios_toxicologia\r\n");
+        for (DocumentoExportacionDTO d : exportacion.documentos()) {
+            String archivo = exportacion.hashDocumentos().containsKey(d.id()) ? "documentos/" + rutaDocumento(d) : "";
+            csv.write(String.join(",",
+                    campo(d.id()), campo(d.fechaIngreso()), campo(d.nombresyapellidos()), campo(d.dni()),
+                    campo(d.edad()), campo(d.cualitativo()), campo(d.cuantitativo()), campo(d.numeroInforme()),
+                    campo(d.nombreOficio()), campo(d.procedencia()), campo(d.tipoMuestra()),
+                    campo(d.personaQueConduce()), campo(d.empleadoId()), campo(archivo),
+                    campo(dosajes.get(d.id())), campo(toxicologias.get(d.id()))));
+            csv.write("\r\n");
+        }
+        csv.flush();
+    }
+
+    private static Map<Long, String> idsPorDocumento(List<ArchivoExportacionDTO> oficios) {
+        return oficios.stream().collect(Collectors.groupingBy(ArchivoExportacionDTO::documentoId,
+                Collectors.mapping(o -> String.valueOf(o.id()), Collectors.joining(" "))));
+    }
+
+    private static String rutaDocumento(DocumentoExportacionDTO doc) {
+        String dni = doc.dni() == null ? "" : doc.dni().replaceAll("[^0-9A-Za-z]", "");
+        return doc.id() + (dni.isEmpty() ? "" : "_" + dni) + ".docx";
+    }
+
+    private static String rutaOficio(ArchivoExportacionDTO oficio) {
+        return oficio.id() + "_documento-" + oficio.documentoId() + ".docx";
+    }
+
+    // RFC 4180: comillas cuando hay separador, comillas o saltos de línea
+    private static String campo(Object valor) {
+        if (valor == null) return "";
+        String texto = String.valueOf(valor);
+        if (texto.contains(",") || texto.contains("\"") || texto.contains("\n") || texto.contains("\r")) {
+            return "\"" + texto.replace("\"", "\"\"") + "\"";
+        }
+        return texto;
+    }
+
+    private ResponseStatusException demasiados() {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "La exportación supera el máximo de " + maxDocumentos + " documentos; acote el rango");
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.sistema_web.service;
+
+import com.example.sistema_web.model.CamposTipados;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// Rellena las columnas tipadas (p. ej. asignaciones_dosaje.cualitativo_valor) de las filas guardadas antes de que
+// existieran. Las entidades las calculan solas al guardarse (@PrePersist / @PreUpdate); esto recorre lo anterior.
+@Component
+public class MigracionCamposTipados {
+
+    private record Campo(String tabla, String columnaTexto, String columnaTipada, Function<String, Object> convertir) {
+        String nombre() {
+            return tabla + "." + columnaTipada;
+        }
+    }
+
+    private static final List<Campo> CAMPOS = List.of(
+            new Campo("asignaciones_dosaje", "cualitativo", "cualitativo_valor", CamposTipados::decimal),
+            new Campo("documentos", "edad", "edad_valor", CamposTipados::edad),
+            new Campo("documentos", "cuantitativo", "cuantitativo_valor", CamposTipados::decimal),
+            new Campo("oficio_dosaje", "fecha", "fecha_valor", CamposTipados::fecha),
+            new Campo("oficio_toxicologia", "fecha", "fecha_valor", CamposTipados::fecha)
+    );
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean habilitada;
+    // Un relleno por campo: los textos que no son convertibles quedan en null y el cursor evita volver a leerlos
+    private final List<RellenoPorLotes<Map<String, Object>>> rellenos;
+
+    public MigracionCamposTipados(JdbcTemplate jdbcTemplate,
+                                  @Value("${campos-tipados.migracion.habilitada:true}") boolean habilitada,
+                                  @Value("${campos-tipados.migracion.lote:500}") int tamanoLote) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.habilitada = habilitada;
+        this.rellenos = CAMPOS.stream()
+                .map(campo -> new RellenoPorLotes<Map<String, Object>>("Columna tipada " + campo.nombre(), tamanoLote,
+                        (despuesDeId, limite) -> pendientes(campo, despuesDeId, limite),
+                        fila -> ((Number) fila.get("id")).longValue(),
+                        lote -> convertir(campo, lote)))
+                .toList();
+    }
+
+    @Scheduled(initialDelayString = "${campos-tipados.migracion.retraso-inicial-ms:25000}",
+            fixedDelayString = "${campos-tipados.migracion.intervalo-ms:30000}")
+    public void migrarPendientes() {
+        if (!habilitada) return;
+
+        for (RellenoPorLotes<Map<String, Object>> relleno : rellenos) {
+            try {
+                relleno.siguienteLote();
+            } catch (Exception e) {
+                System.err.println("⚠️ No se pudo migrar " + relleno.nombre() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private List<Map<String, Object>> pendientes(Campo campo, long despuesDeId, int limite) {
+        return jdbcTemplate.queryForList(
+                "SELECT id, " + campo.columnaTexto() + " AS texto FROM " + campo.tabla()
+                        + " WHERE id > ? AND " + campo.columnaTexto() + " IS NOT NULL AND " + campo.columnaTipada() + " IS NULL"
+                        + " ORDER BY id LIMIT ?",
+                despuesDeId, limite);
+    }
+
+    private int convertir(Campo campo, List<Map<String, Object>> filas) {
+        List<Object[]> cambios = new ArrayList<>();
+        for (Map<String, Object> fila : filas) {
+            String texto = (String) fila.get("texto");
+            Object valor = campo.convertir().apply(texto);
+            if (valor != null) cambios.add(new Object[]{valor, fila.get("id"), texto});
+        }
+        // Solo si el texto sigue igual: una edición simultánea ya dejó su propio valor
+        if (!cambios.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE " + campo.tabla() + " SET " + campo.columnaTipada() + " = ?"
+                    + " WHERE id = ? AND " + campo.columnaTexto() + " = ?", cambios);
+        }
+        return cambios.size();
+    }
+}
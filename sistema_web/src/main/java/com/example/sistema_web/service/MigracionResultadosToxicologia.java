@@ -0,0 +1,86 @@
+package com.example.sistema_web.service;
+
+import com.example.sistema_web.model.ResultadoToxicologia;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Copia a resultados_toxicologia los resultados de las asignaciones guardadas antes de que existiera la tabla.
+// Las altas y ediciones nuevas ya escriben ambas representaciones; esto solo recorre lo anterior, por lotes.
+@Component
+public class MigracionResultadosToxicologia {
+
+    private static final String INSERTAR =
+            "INSERT INTO resultados_toxicologia (asignacion_id, sustancia, resultado) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaccion;
+    private final boolean habilitada;
+    // Las asignaciones con JSON vacío no generan filas: el cursor evita volver a leerlas en cada pasada
+    private final RellenoPorLotes<Long> relleno;
+
+    public MigracionResultadosToxicologia(JdbcTemplate jdbcTemplate,
+                                          PlatformTransactionManager transactionManager,
+                                          @Value("${toxicologia.resultados.migracion.habilitada:true}") boolean habilitada,
+                                          @Value("${toxicologia.resultados.migracion.lote:200}") int tamanoLote) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaccion = new TransactionTemplate(transactionManager);
+        this.habilitada = habilitada;
+        this.relleno = new RellenoPorLotes<>("Resultados de toxicología", tamanoLote,
+                this::pendientes, Long::longValue, this::migrarLote);
+    }
+
+    @Scheduled(initialDelayString = "${toxicologia.resultados.migracion.retraso-inicial-ms:20000}",
+            fixedDelayString = "${toxicologia.resultados.migracion.intervalo-ms:30000}")
+    public void migrarPendientes() {
+        if (habilitada) relleno.siguienteLote();
+    }
+
+    private List<Long> pendientes(long despuesDeId, int limite) {
+        return jdbcTemplate.queryForList("""
+                SELECT a.id FROM asignaciones_toxicologia a
+                WHERE a.id > ? AND a.resultado_toxicologico IS NOT NULL
+                  AND NOT EXISTS (SELECT 1 FROM resultados_toxicologia r WHERE r.asignacion_id = a.id)
+                ORDER BY a.id LIMIT ?
+                """, Long.class, despuesDeId, limite);
+    }
+
+    private int migrarLote(List<Long> ids) {
+        int migradas = 0;
+        for (Long id : ids) {
+            try {
+                if (migrar(id)) migradas++;
+            } catch (Exception e) {
+                System.err.println("⚠️ No se pudieron migrar los resultados de la asignación " + id + ": " + e.getMessage());
+            }
+        }
+        return migradas;
+    }
+
+    private boolean migrar(Long id) {
+        return Boolean.TRUE.equals(transaccion.execute(estado -> {
+            // FOR UPDATE: una edición simultánea de la asignación espera, o ya dejó sus filas y aquí no se toca nada
+            List<String> json = jdbcTemplate.queryForList(
+                    "SELECT resultado_toxicologico FROM asignaciones_toxicologia WHERE id = ? FOR UPDATE", String.class, id);
+            if (json.isEmpty()) return false;
+
+            Integer existentes = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM resultados_toxicologia WHERE asignacion_id = ?", Integer.class, id);
+            if (existentes != null && existentes > 0) return false;
+
+            List<Object[]> filas = new ArrayList<>();
+            ResultadoToxicologia.leerJson(json.get(0)).forEach((sustancia, resultado) ->
+                    filas.add(new Object[]{id, sustancia, resultado}));
+            if (filas.isEmpty()) return false;
+
+            jdbcTemplate.batchUpdate(INSERTAR, filas);
+            return true;
+        }));
+    }
+}
@@ -5,9 +5,12 @@ import com.example.sistema_web.model.Empleado;
 import com.example.sistema_web.model.Notification;
 import com.example.sistema_web.repository.NotificationRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class NotificationService {
@@ -15,9 +18,19 @@ public class NotificationService {
     @Autowired
     private NotificationRepository notificationRepo;
 
+    @Autowired
+    private ResumenDiarioService resumenDiarioService;
+
+    @Autowired
+    private ApplicationEventPublisher eventos;
+
+    @Transactional
     public Notification crearNotificacion(String message, String area, Long asignacionId, Empleado destinatario, Empleado emisor) {
         Notification notificacion = new Notification(message, area, asignacionId, destinatario, emisor);
-        return notificationRepo.save(notificacion);
+        Notification saved = notificationRepo.save(notificacion);
+        resumenDiarioService.aplicar(Map.of(), resumenDiarioService.aportes(saved));
+        eventos.publishEvent(new CacheDashboard.Modificacion(CacheDashboard.Origen.NOTIFICACIONES));
+        return saved;
     }
 
     // ✅ Devuelve TODAS las notificaciones con relaciones cargadas
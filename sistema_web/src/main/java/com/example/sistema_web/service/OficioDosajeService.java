@@ -1,17 +1,24 @@
 package com.example.sistema_web.service;
 import com.example.sistema_web.dto.OficioDosajeDTO;
+import com.example.sistema_web.dto.GeneracionOficiosDTO;
+import com.example.sistema_web.dto.ResultadoOficioMasivoDTO;
+import com.example.sistema_web.dto.FiltroListadoDTO;
+import com.example.sistema_web.dto.OficioDosajeResumenDTO;
+import com.example.sistema_web.dto.PaginaDTO;
+import com.example.sistema_web.onlyoffice.DestinoOnlyOffice;
 import java.util.List;
 
-public interface OficioDosajeService {
+public interface OficioDosajeService extends DestinoOnlyOffice {
     OficioDosajeDTO crear(OficioDosajeDTO dto);
     OficioDosajeDTO obtenerPorId(Long id);
-    List<OficioDosajeDTO> listar();
+    List<OficioDosajeResumenDTO> listar();
+    PaginaDTO<OficioDosajeResumenDTO> listarPaginado(FiltroListadoDTO filtro);
     OficioDosajeDTO actualizar(Long id, OficioDosajeDTO dto);
     void eliminar(Long id);
-    byte[] obtenerContenidoArchivo(Long id);
-    void actualizarDesdeUrlOnlyOffice(Long id, String urlDescarga, Long documentoId);
+    ArchivoDescarga obtenerArchivo(Long id);
     boolean existeOficioDosaje(Long id);
     void uploadOficioDosaje(Long id, byte[] archivoBytes);
     Long crearOficioDosajeVacio();
     void sincronizarDatosAlWord(Long id);
+    List<ResultadoOficioMasivoDTO> generarMasivo(GeneracionOficiosDTO cabecera);
 }
\ No newline at end of file
@@ -1,17 +1,24 @@
 package com.example.sistema_web.service;
 import com.example.sistema_web.dto.OficioToxicologiaDTO;
+import com.example.sistema_web.dto.GeneracionOficiosDTO;
+import com.example.sistema_web.dto.ResultadoOficioMasivoDTO;
+import com.example.sistema_web.dto.FiltroListadoDTO;
+import com.example.sistema_web.dto.OficioToxicologiaResumenDTO;
+import com.example.sistema_web.dto.PaginaDTO;
+import com.example.sistema_web.onlyoffice.DestinoOnlyOffice;
 import java.util.List;
 
-public interface OficioToxicologiaService {
+public interface OficioToxicologiaService extends DestinoOnlyOffice {
     OficioToxicologiaDTO crear(OficioToxicologiaDTO dto);
     OficioToxicologiaDTO obtenerPorId(Long id);
-    List<OficioToxicologiaDTO> listar();
+    List<OficioToxicologiaResumenDTO> listar();
+    PaginaDTO<OficioToxicologiaResumenDTO> listarPaginado(FiltroListadoDTO filtro);
     OficioToxicologiaDTO actualizar(Long id, OficioToxicologiaDTO dto);
     void eliminar(Long id);
-    byte[] obtenerContenidoArchivo(Long id);
-    void actualizarDesdeUrlOnlyOffice(Long id, String urlDescarga, Long documentoId);
+    ArchivoDescarga obtenerArchivo(Long id);
     boolean existeOficioToxicologia(Long id);
     void uploadOficioToxicologia(Long id, byte[] archivoBytes);
     Long crearOficioToxicologiaVacio();
     void sincronizarDatosAlWord(Long id);
+    List<ResultadoOficioMasivoDTO> generarMasivo(GeneracionOficiosDTO cabecera);
 }
@@ -2,34 +2,35 @@ package com.example.sistema_web.service;
 
 import com.example.sistema_web.config.JwtAuthFilter;
 import com.example.sistema_web.dto.OficioToxicologiaDTO;
+import com.example.sistema_web.dto.GeneracionOficiosDTO;
+import com.example.sistema_web.dto.ResultadoOficioMasivoDTO;
+import com.example.sistema_web.dto.FiltroListadoDTO;
+import com.example.sistema_web.dto.OficioToxicologiaResumenDTO;
+import com.example.sistema_web.dto.PaginaDTO;
 import com.example.sistema_web.model.Documento;
 import com.example.sistema_web.model.Empleado;
 import com.example.sistema_web.model.OficioToxicologia;
+import com.example.sistema_web.plantilla.Plantilla;
+import com.example.sistema_web.plantilla.PlantillaCargada;
+import com.example.sistema_web.plantilla.TemplateRegistry;
 import com.example.sistema_web.repository.DocumentoRepository;
 import com.example.sistema_web.repository.EmpleadoRepository;
 import com.example.sistema_web.repository.OficioToxicologiaRepository;
+import com.example.sistema_web.word.CacheReportes;
+import com.example.sistema_web.word.GeneradorOficios;
 import fr.opensagres.xdocreport.document.IXDocReport;
-import fr.opensagres.xdocreport.document.registry.XDocReportRegistry;
-import fr.opensagres.xdocreport.template.IContext;
-import fr.opensagres.xdocreport.template.TemplateEngineKind;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Locale;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -38,6 +39,11 @@ public class OficioToxicologiaServiceImpl implements OficioToxicologiaService{
     private final OficioToxicologiaRepository repository;
     private final DocumentoRepository documentoRepository;
     private final EmpleadoRepository empleadoRepository;
+    private final ArchivoService archivoService;
+    private final TemplateRegistry templateRegistry;
+    private final CacheReportes cacheReportes;
+    private final GeneradorOficios generadorOficios;
+
     // ✅ 1. CREAR OFICIO
     @Override
     @Transactional
@@ -55,60 +61,37 @@ public class OficioToxicologiaServiceImpl implements OficioToxicologiaService{
 
     // ✅ 3. OBTENER ARCHIVO (Si es nuevo, devuelve plantilla)
     @Override
-    public byte[] obtenerContenidoArchivo(Long id) {
+    public ArchivoDescarga obtenerArchivo(Long id) {
         OficioToxicologia oficio = repository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Oficio no encontrado"));
-        // SI YA EXISTE UN ARCHIVO GUARDADO (Usuario ya presionó Guardar antes)
-        if (oficio.getArchivo() != null && oficio.getArchivo().length > 0) {
-            return oficio.getArchivo();
-        }
-        // SI ES NUEVO: Leemos la plantilla de resources y la devolvemos SIN hacer repository.save()
-        try {
-            Resource resource = new ClassPathResource("templates/oficio_dosaje.docx");
-            if (!resource.exists()) {
-                throw new RuntimeException("❌ Plantilla no encontrada en resources");
-            }
-            return resource.getInputStream().readAllBytes();
-        } catch (Exception e) {
-            throw new RuntimeException("Error al leer la plantilla de oficio", e);
-        }
+        // Si ya se guardó antes se sirve el blob; si es nuevo, la plantilla de resources SIN hacer repository.save()
+        return archivoService.descargar(oficio, Plantilla.OFICIO_TOXICOLOGIA);
     }
 
-    // ✅ 4. GUARDAR DESDE ONLYOFFICE (Con extracción de datos)
+    // ✅ 4. GUARDAR DESDE ONLYOFFICE (llamado por el CallbackPipeline)
     @Override
-    @Transactional
-    public void actualizarDesdeUrlOnlyOffice(Long id, String urlDescarga, Long documentoId) {
-        if (urlDescarga.contains("onlyoffice_server")) {
-            urlDescarga = urlDescarga.replace("onlyoffice_server", "localhost");
-        }
-
-        System.out.println("⬇️ Descargando cambios del Oficio desde OnlyOffice: " + urlDescarga);
-        try {
-            java.net.URL url = new java.net.URL(urlDescarga);
-            byte[] archivoBytes;
-            java.net.HttpURLConnection connection = (java.net.HttpURLConnection) url.openConnection();
-            try (java.io.InputStream in = connection.getInputStream()) {
-                archivoBytes = in.readAllBytes();
-            }
-
-            OficioToxicologia oficio = repository.findById(id).orElseThrow(() ->
-                    new RuntimeException("Oficio no encontrado con ID: " + id)
-            );
-
-            oficio.setArchivo(archivoBytes);
+    public String nombreDestino() {
+        return "Oficio toxicología";
+    }
 
-            if (documentoId != null) {
-                documentoRepository.findById(documentoId).ifPresent(oficio::setDocumento);
-            }
+    @Override
+    public String hashActual(Long id) {
+        OficioToxicologia oficio = repository.findById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Oficio no encontrado con ID: " + id));
+        return archivoService.resolverHash(oficio);
+    }
 
-            repository.save(oficio);
-            System.out.println("✅ ¡OFICIO GUARDADO EN MYSQL! Tamaño: " + archivoBytes.length + " bytes.");
+    @Override
+    @Transactional
+    public void aplicarArchivo(Long id, String hash, Map<String, String> campos, Long documentoId) {
+        OficioToxicologia oficio = repository.findById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Oficio no encontrado con ID: " + id));
 
-        } catch (Exception e) {
-            System.err.println("❌ ERROR AL GUARDAR OFICIO: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Error al guardar archivo: " + e.getMessage(), e);
+        oficio.setArchivoHash(hash);
+        if (documentoId != null) {
+            documentoRepository.findById(documentoId).ifPresent(oficio::setDocumento);
         }
+        repository.save(oficio);
     }
 
     @Override
@@ -123,21 +106,12 @@ public class OficioToxicologiaServiceImpl implements OficioToxicologiaService{
 
         oficio.setEmisor(emisor); // ✅ Se guarda quién lo creó
 
-        byte[] plantillaBase = cargarPlantillaDesdeResources();
-        oficio.setArchivo(plantillaBase);
+        byte[] plantillaBase = templateRegistry.contenido(Plantilla.OFICIO_TOXICOLOGIA);
+        archivoService.guardar(oficio, plantillaBase);
 
         return mapToDTO(repository.save(oficio));
     }
 
-    private byte[] cargarPlantillaDesdeResources() {
-        try {
-            Resource resource = new ClassPathResource("templates/oficio_toxicologia.docx");
-            return resource.getInputStream().readAllBytes();
-        } catch (IOException e) {
-            throw new RuntimeException("Error al leer la plantilla de toxicologia", e);
-        }
-    }
-
     @Override
     public OficioToxicologiaDTO obtenerPorId(Long id) {
         return repository.findById(id).map(this::mapToDTO)
@@ -145,39 +119,51 @@ public class OficioToxicologiaServiceImpl implements OficioToxicologiaService{
     }
 
     @Override
-    public List<OficioToxicologiaDTO> listar() {
+    public List<OficioToxicologiaResumenDTO> listar() {
         // 1. Obtener el ID del empleado logueado desde el Token
         Long idLogueado = JwtAuthFilter.getCurrentEmpleadoId();
 
         // 🚩 CAMBIO CLAVE: Si es el admin global (id nulo) o no tiene empleado asociado, ver TODO
         if (idLogueado == null) {
             System.out.println("👑 Acceso SuperAdmin detectado. Listando todos los Oficios de Toxicología.");
-            return repository.findAll().stream().map(this::mapToDTO).collect(Collectors.toList());
+            return repository.findResumenes();
         }
 
         // 2. Buscar sus datos para verificar su rango/cargo
         Empleado empLogueado = empleadoRepository.findById(idLogueado).orElse(null);
 
         // Si no encontramos al empleado pero tiene sesión, por seguridad mostramos todo (caso Admin)
-        if (empLogueado == null) return repository.findAll().stream().map(this::mapToDTO).collect(Collectors.toList());
+        if (empLogueado == null) return repository.findResumenes();
 
         String cargo = empLogueado.getCargo().trim().toLowerCase();
-        List<OficioToxicologia> listaFinal;
 
         // 🛡️ REGLA DE VISIBILIDAD: Admin y Químicos ven todo el laboratorio
         if (cargo.contains("admin") || cargo.contains("quimico") || cargo.contains("químico")) {
             System.out.println("🔓 Acceso TOTAL Oficios Toxicología para: " + empLogueado.getNombre());
-            listaFinal = repository.findAll();
-        } else {
-            // 🔒 Los Auxiliares ven solo sus propios oficios
-            System.out.println("🔒 Acceso FILTRADO Oficios Toxicología para Auxiliar: " + empLogueado.getNombre());
-            listaFinal = repository.findByEmisorId(idLogueado);
+            return repository.findResumenes();
+        }
+
+        // 🔒 Los Auxiliares ven solo sus propios oficios (más recientes arriba)
+        System.out.println("🔒 Acceso FILTRADO Oficios Toxicología para Auxiliar: " + empLogueado.getNombre());
+        return repository.findResumenesByEmisorId(idLogueado);
+    }
+
+    @Override
+    public PaginaDTO<OficioToxicologiaResumenDTO> listarPaginado(FiltroListadoDTO filtro) {
+        Long idLogueado = JwtAuthFilter.getCurrentEmpleadoId();
+        Long emisorId = null;
+
+        Empleado empLogueado = idLogueado != null ? empleadoRepository.findById(idLogueado).orElse(null) : null;
+        if (empLogueado != null) {
+            String cargo = empLogueado.getCargo().trim().toLowerCase();
+            if (!cargo.contains("admin") && !cargo.contains("quimico") && !cargo.contains("químico")) {
+                emisorId = idLogueado;
+            }
         }
 
-        return listaFinal.stream()
-                .map(this::mapToDTO)
-                .sorted((a, b) -> b.getId().compareTo(a.getId())) // Más recientes arriba
-                .collect(Collectors.toList());
+        List<OficioToxicologiaResumenDTO> filas = repository.findPagina(filtro.cursor(), emisorId, filtro.peritoId(),
+                filtro.dniNormalizado(), filtro.desde(), filtro.hasta(), filtro.ventana());
+        return PaginaDTO.de(filas, filtro.limiteEfectivo(), OficioToxicologiaResumenDTO::id);
     }
 
     @Override
@@ -189,12 +175,13 @@ public class OficioToxicologiaServiceImpl implements OficioToxicologiaService{
         oficio.setNro_oficio(dto.getNro_oficio());
         oficio.setGradoPNP(dto.getGradoPNP());
         oficio.setNombresyapellidosPNP(dto.getNombresyapellidosPNP());
-        oficio.setArchivo(dto.getArchivo());
         if (dto.getDocumentoId() != null) {
             var documento = documentoRepository.findById(dto.getDocumentoId())
                     .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Documento no encontrado"));
             oficio.setDocumento(documento);
         }
+        // El archivo se escribe recién cuando todo lo referenciado existe: un 404 no deja blobs sueltos
+        if (dto.getArchivo() != null) archivoService.guardar(oficio, dto.getArchivo());
         return mapToDTO(repository.save(oficio));
     }
 
@@ -208,8 +195,9 @@ public class OficioToxicologiaServiceImpl implements OficioToxicologiaService{
 
     @Override
     public void uploadOficioToxicologia(Long id, byte[] archivoBytes) {
-        OficioToxicologia oficio = repository.findById(id).orElseThrow();
-        oficio.setArchivo(archivoBytes);
+        OficioToxicologia oficio = repository.findById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Oficio no encontrado"));
+        archivoService.guardar(oficio, archivoBytes);
         repository.save(oficio);
     }
 
@@ -222,7 +210,6 @@ public class OficioToxicologiaServiceImpl implements OficioToxicologiaService{
         dto.setNro_oficio(oficio.getNro_oficio());
         dto.setGradoPNP(oficio.getGradoPNP());
         dto.setNombresyapellidosPNP(oficio.getNombresyapellidosPNP());
-        dto.setArchivo(oficio.getArchivo());
         if (oficio.getDocumento() != null) {
             dto.setDocumentoId(oficio.getDocumento().getId());
             dto.setPersonaInvolucrada(oficio.getDocumento().getNombresyapellidos());
@@ -239,14 +226,15 @@ public class OficioToxicologiaServiceImpl implements OficioToxicologiaService{
                 .fecha(dto.getFecha())
                 .nro_oficio(dto.getNro_oficio())
                 .gradoPNP(dto.getGradoPNP())
-                .nombresyapellidosPNP(dto.getNombresyapellidosPNP())
-                .archivo(dto.getArchivo());
+                .nombresyapellidosPNP(dto.getNombresyapellidosPNP());
 
         if (dto.getDocumentoId() != null) {
             var documento = documentoRepository.findById(dto.getDocumentoId()).orElseThrow();
             builder.documento(documento);
         }
-        return builder.build();
+        OficioToxicologia oficio = builder.build();
+        if (dto.getArchivo() != null) archivoService.guardar(oficio, dto.getArchivo());
+        return oficio;
     }
 
     @Override
@@ -256,40 +244,30 @@ public class OficioToxicologiaServiceImpl implements OficioToxicologiaService{
         Documento docBase = oficio.getDocumento();
 
         try {
-            // 1. DETERMINAR LA FUENTE DEL DOCUMENTO
-            InputStream in;
-            if (oficio.getArchivo() != null && oficio.getArchivo().length > 0) {
-                // Si el usuario ya editó el Word, usamos su versión actual para no perder cambios
-                in = new ByteArrayInputStream(oficio.getArchivo());
-            } else {
-                // Si es la primera vez, usamos la plantilla de resources
-                in = new ClassPathResource("templates/oficio_toxicologia.docx").getInputStream();
+            // 1. DETERMINAR LA FUENTE DEL DOCUMENTO (el reporte compilado se reutiliza si el contenido no cambió)
+            String hashActual = archivoService.resolverHash(oficio);
+            PlantillaCargada plantilla = hashActual == null ? templateRegistry.obtener(Plantilla.OFICIO_TOXICOLOGIA) : null;
+
+            // 2. DATOS A INYECTAR (solo reemplazan los $placeholders que sigan existiendo)
+            Map<String, String> datos = datosParaWord(oficio, docBase);
+
+            // Mismos datos sobre el mismo archivo que la última vez: el Word ya está al día
+            String huella = archivoService.huella(datos, hashActual != null ? hashActual : plantilla.getHash());
+            if (huella.equals(oficio.getHuellaSincronizacion())) {
+                System.out.println("⏭️ Oficio " + id + " sin cambios desde la última sincronización");
+                return;
             }
 
-            IXDocReport report = XDocReportRegistry.getRegistry().loadReport(in, TemplateEngineKind.Velocity);
-            IContext context = report.createContext();
-
-            // 2. INYECTAR DATOS (Esto solo reemplazará los $placeholders que sigan existiendo)
-            String fechaFormateada = formatearFechaLarga(oficio.getFecha());
-            context.put("f_fecha", fechaFormateada);
-            context.put("f_oficio", safeString(oficio.getNro_oficio()));
-            context.put("f_grado", safeString(oficio.getGradoPNP()));
-            context.put("f_responsablePNP", safeString(oficio.getNombresyapellidosPNP()));
-
-            if (docBase != null) {
-                context.put("d_nombre", safeString(docBase.getNombresyapellidos()));
-                context.put("d_dni", safeString(docBase.getDni()));
-                context.put("d_edad", safeString(docBase.getEdad()));
-                context.put("d_muestra", safeString(docBase.getTipoMuestra()));
-                context.put("d_informe", safeString(docBase.getNumeroInforme()));
-                context.put("d_nombre_oficio_base", safeString(docBase.getNombreOficio()));
-            }
+            IXDocReport report = hashActual != null
+                    // Si el usuario ya editó el Word, usamos su versión actual para no perder cambios
+                    ? cacheReportes.obtener(hashActual, () -> archivoService.abrir(hashActual))
+                    // Si es la primera vez, usamos la plantilla de resources
+                    : cacheReportes.obtener(plantilla.getHash(), plantilla::abrir);
 
             // 3. GENERAR Y GUARDAR
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            report.process(context, out);
-
-            oficio.setArchivo(out.toByteArray());
+            archivoService.guardar(oficio, GeneradorOficios.renderizar(report, datos));
+            // La huella queda atada al archivo recién generado: si luego se edita en OnlyOffice, deja de coincidir
+            oficio.setHuellaSincronizacion(archivoService.huella(datos, oficio.getArchivoHash()));
             repository.save(oficio);
             System.out.println("✅ Sincronización exitosa preservando cambios manuales.");
 
@@ -298,6 +276,45 @@ public class OficioToxicologiaServiceImpl implements OficioToxicologiaService{
         }
     }
 
+    // ✅ GENERACIÓN MASIVA: un oficio por documento, renderizados en paralelo y guardados en una sola transacción
+    @Override
+    public List<ResultadoOficioMasivoDTO> generarMasivo(GeneracionOficiosDTO cabecera) {
+        Long idEmisor = JwtAuthFilter.getCurrentEmpleadoId();
+        Empleado emisor = idEmisor != null ? empleadoRepository.findById(idEmisor).orElse(null) : null;
+
+        GeneradorOficios.Fabrica<OficioToxicologia> fabrica = new GeneradorOficios.Fabrica<>(
+                doc -> OficioToxicologia.builder()
+                        .fecha(cabecera.getFecha())
+                        .nro_oficio(cabecera.getNro_oficio())
+                        .gradoPNP(cabecera.getGradoPNP())
+                        .nombresyapellidosPNP(cabecera.getNombresyapellidosPNP())
+                        .emisor(emisor)
+                        .documento(doc)
+                        .build(),
+                oficio -> datosParaWord(oficio, oficio.getDocumento()),
+                (oficio, datos) -> oficio.setHuellaSincronizacion(archivoService.huella(datos, oficio.getArchivoHash())));
+        return generadorOficios.generarMasivo("oficio toxicología masivo", cabecera.getDocumentoIds(),
+                templateRegistry.obtener(Plantilla.OFICIO_TOXICOLOGIA), repository, fabrica);
+    }
+
+    private Map<String, String> datosParaWord(OficioToxicologia oficio, Documento docBase) {
+        Map<String, String> datos = new LinkedHashMap<>();
+        datos.put("f_fecha", formatearFechaLarga(oficio.getFecha()));
+        datos.put("f_oficio", safeString(oficio.getNro_oficio()));
+        datos.put("f_grado", safeString(oficio.getGradoPNP()));
+        datos.put("f_responsablePNP", safeString(oficio.getNombresyapellidosPNP()));
+
+        if (docBase != null) {
+            datos.put("d_nombre", safeString(docBase.getNombresyapellidos()));
+            datos.put("d_dni", safeString(docBase.getDni()));
+            datos.put("d_edad", safeString(docBase.getEdad()));
+            datos.put("d_muestra", safeString(docBase.getTipoMuestra()));
+            datos.put("d_informe", safeString(docBase.getNumeroInforme()));
+            datos.put("d_nombre_oficio_base", safeString(docBase.getNombreOficio()));
+        }
+        return datos;
+    }
+
     private String safeString(Object val) {
         return (val == null) ? " " : String.valueOf(val);
     }
@@ -0,0 +1,64 @@
+package com.example.sistema_web.service;
+
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+// Esqueleto común de las migraciones en segundo plano que completan filas guardadas antes de un cambio de esquema.
+// Cada pasada procesa un lote de pendientes a partir de un cursor por id, así las filas que no se pueden completar
+// (texto no convertible, JSON vacío) no vuelven a leerse; cuando una consulta no trae nada, el relleno termina.
+class RellenoPorLotes<T> {
+
+    @FunctionalInterface
+    interface Consulta<T> {
+        // Hasta `limite` filas pendientes con id mayor a `despuesDeId`, ordenadas por id
+        List<T> pendientes(long despuesDeId, int limite);
+    }
+
+    @FunctionalInterface
+    interface Proceso<T> {
+        // Devuelve cuántas filas del lote quedaron completadas
+        int procesar(List<T> lote);
+    }
+
+    private final String nombre;
+    private final int tamanoLote;
+    private final Consulta<T> consulta;
+    private final ToLongFunction<T> id;
+    private final Proceso<T> proceso;
+
+    private volatile long ultimoId = 0;
+    private volatile boolean completo = false;
+
+    RellenoPorLotes(String nombre, int tamanoLote, Consulta<T> consulta, ToLongFunction<T> id, Proceso<T> proceso) {
+        this.nombre = nombre;
+        this.tamanoLote = Math.max(1, tamanoLote);
+        this.consulta = consulta;
+        this.id = id;
+        this.proceso = proceso;
+    }
+
+    String nombre() {
+        return nombre;
+    }
+
+    boolean completo() {
+        return completo;
+    }
+
+    // Un lote por llamada; pensado para un @Scheduled de intervalo fijo, que nunca se solapa consigo mismo
+    void siguienteLote() {
+        if (completo) return;
+
+        List<T> lote = consulta.pendientes(ultimoId, tamanoLote);
+        if (lote.isEmpty()) {
+            completo = true;
+            System.out.println("✅ " + nombre + ": migración completa");
+            return;
+        }
+
+        int completadas = proceso.procesar(lote);
+        ultimoId = id.applyAsLong(lote.get(lote.size() - 1));
+        System.out.println("🚚 " + nombre + ": " + completadas + "/" + lote.size()
+                + " filas migradas (hasta ID " + ultimoId + ")");
+    }
+}
@@ -3,16 +3,22 @@ package com.example.sistema_web.service;
 
 import com.example.sistema_web.dto.ReporteDTO;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.List;
 
 public interface ReporteService {
     Long getTotalEmpleados();
     Long getTotalDocumentos();
-    List<ReporteDTO.SustanciaDTO> getAnalisisPorSustancia();
+    List<ReporteDTO.SustanciaDTO> getAnalisisPorSustancia(LocalDate desde, LocalDate hasta, String area);
     List<ReporteDTO.EstadoDTO> getEstados();
     List<ReporteDTO.DocumentoDiaDTO> getDocumentosPorDia();
+    List<ReporteDTO.DocumentoDiaDTO> getActividad(LocalDate desde, LocalDate hasta, String granularidad);
     List<ReporteDTO.EmpleadoDTO> getEmpleadosProductividad();
-    byte[] generarExcel(int mes, int año) throws IOException;
+    List<ReporteDTO.AreaDTO> getAsignacionesPorArea();
+    List<ReporteDTO.DocumentoDiaDTO> getAsignacionesPorPerito(Long peritoId, LocalDate desde, LocalDate hasta, String granularidad);
+    void escribirExcel(int mes, int año, OutputStream salida) throws IOException;
     byte[] generarPdf(int mes, int año) throws IOException;
-    List<ReporteDTO.RangoCualitativoDTO> getRangosCualitativos();
+    List<ReporteDTO.RangoCualitativoDTO> getRangosCualitativos(List<BigDecimal> bordes, LocalDate desde, LocalDate hasta, Long peritoId);
 }
\ No newline at end of file
@@ -1,21 +1,41 @@
 // src/main/java/com/example/sistema_web/service/ReporteServiceImpl.java
 package com.example.sistema_web.service;
 
+import com.example.sistema_web.dto.DocumentoExportacionDTO;
+import com.example.sistema_web.dto.FilaReporteMensualDTO;
 import com.example.sistema_web.dto.ReporteDTO;
-import com.example.sistema_web.model.AsignacionDosaje;
+import com.example.sistema_web.model.Empleado;
 import com.example.sistema_web.model.Notification;
+import com.example.sistema_web.model.ResultadoToxicologia;
+import com.example.sistema_web.model.ResumenDiario;
 import com.example.sistema_web.repository.*;
+import com.example.sistema_web.service.CacheDashboard.Origen;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -25,140 +45,377 @@ public class ReporteServiceImpl implements ReporteService {
     private final DocumentoRepository documentoRepository;
     private final AsignacionDosajeRepository dosajeRepository;
     private final AsignacionToxicologiaRepository toxicologiaRepository;
-    private final NotificationRepository notificationRepository;
+    private final ResultadoToxicologiaRepository resultadoToxicologiaRepository;
+    private final ResumenDiarioRepository resumenDiarioRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final CacheDashboard cache;
+
+    @Value("${reportes.excel.filas-en-memoria:100}")
+    private int filasExcelEnMemoria;
 
     @Override
     public Long getTotalEmpleados() {
-        return empleadoRepository.count();
+        return cache.obtener("reporte:empleados", EnumSet.of(Origen.EMPLEADOS), empleadoRepository::count);
     }
 
     @Override
     public Long getTotalDocumentos() {
-        return documentoRepository.count();
+        return cache.obtener("reporte:documentos", EnumSet.of(Origen.DOCUMENTOS), documentoRepository::count);
     }
 
+    private static final List<String> POSITIVO_NEGATIVO = List.of("Positivo", "Negativo");
+
+    // Clave en el JSON de resultados (columna sustancia de resultados_toxicologia) → nombre para mostrar, en el
+    // orden en que se presentan
+    private static final List<Map.Entry<String, String>> SUSTANCIAS = List.of(
+            Map.entry("marihuana", "Marihuana"),
+            Map.entry("cocaina", "Cocaína"),
+            Map.entry("benzodiacepinas", "Benzodiacepinas"),
+            Map.entry("barbituricos", "Barbitúricos"),
+            Map.entry("carbamatos", "Carbamatos"),
+            Map.entry("estricnina", "Estricnina"),
+            Map.entry("cumarinas", "Cumarinas"),
+            Map.entry("organofosforados", "Organofosforados"),
+            Map.entry("misoprostol", "Misoprostol"),
+            Map.entry("piretrinas", "Piretrinas")
+    );
+
     @Override
-    public List<ReporteDTO.SustanciaDTO> getAnalisisPorSustancia() {
-        // ✅ Contar solo resultados POSITIVOS
-        long marihuanaPos = toxicologiaRepository.countByResultadoToxicologicoContaining("\"marihuana\":\"Positivo\"");
-        long cocainaPos = toxicologiaRepository.countByResultadoToxicologicoContaining("\"cocaina\":\"Positivo\"");
-        long benzodiacepinasPos = toxicologiaRepository.countByResultadoToxicologicoContaining("\"benzodiacepinas\":\"Positivo\"");
-        long barbituricosPos = toxicologiaRepository.countByResultadoToxicologicoContaining("\"barbituricos\":\"Positivo\"");
-        long carbamatosPos = toxicologiaRepository.countByResultadoToxicologicoContaining("\"carbamatos\":\"Positivo\"");
-        long estricninaPos = toxicologiaRepository.countByResultadoToxicologicoContaining("\"estricnina\":\"Positivo\"");
-        long cumarinasPos = toxicologiaRepository.countByResultadoToxicologicoContaining("\"cumarinas\":\"Positivo\"");
-        long organofosforadosPos = toxicologiaRepository.countByResultadoToxicologicoContaining("\"organofosforados\":\"Positivo\"");
-        long misoprostolPos = toxicologiaRepository.countByResultadoToxicologicoContaining("\"misoprostol\":\"Positivo\"");
-        long piretrinasPos = toxicologiaRepository.countByResultadoToxicologicoContaining("\"piretrinas\":\"Positivo\"");
-
-        // ✅ Contar solo resultados NEGATIVOS
-        long marihuanaNeg = toxicologiaRepository.countByResultadoToxicologicoContaining("\"marihuana\":\"Negativo\"");
-        long cocainaNeg = toxicologiaRepository.countByResultadoToxicologicoContaining("\"cocaina\":\"Negativo\"");
-        long benzodiacepinasNeg = toxicologiaRepository.countByResultadoToxicologicoContaining("\"benzodiacepinas\":\"Negativo\"");
-        long barbituricosNeg = toxicologiaRepository.countByResultadoToxicologicoContaining("\"barbituricos\":\"Negativo\"");
-        long carbamatosNeg = toxicologiaRepository.countByResultadoToxicologicoContaining("\"carbamatos\":\"Negativo\"");
-        long estricninaNeg = toxicologiaRepository.countByResultadoToxicologicoContaining("\"estricnina\":\"Negativo\"");
-        long cumarinasNeg = toxicologiaRepository.countByResultadoToxicologicoContaining("\"cumarinas\":\"Negativo\"");
-        long organofosforadosNeg = toxicologiaRepository.countByResultadoToxicologicoContaining("\"organofosforados\":\"Negativo\"");
-        long misoprostolNeg = toxicologiaRepository.countByResultadoToxicologicoContaining("\"misoprostol\":\"Negativo\"");
-        long piretrinasNeg = toxicologiaRepository.countByResultadoToxicologicoContaining("\"piretrinas\":\"Negativo\"");
-
-        // ✅ Total por sustancia (positivos + negativos)
-        long marihuanaTotal = marihuanaPos + marihuanaNeg;
-        long cocainaTotal = cocainaPos + cocainaNeg;
-        long benzodiacepinasTotal = benzodiacepinasPos + benzodiacepinasNeg;
-        long barbituricosTotal = barbituricosPos + barbituricosNeg;
-        long carbamatosTotal = carbamatosPos + carbamatosNeg;
-        long estricninaTotal = estricninaPos + estricninaNeg;
-        long cumarinasTotal = cumarinasPos + cumarinasNeg;
-        long organofosforadosTotal = organofosforadosPos + organofosforadosNeg;
-        long misoprostolTotal = misoprostolPos + misoprostolNeg;
-        long piretrinasTotal = piretrinasPos + piretrinasNeg;
-
-        return Arrays.asList(
-                new ReporteDTO.SustanciaDTO("Marihuana", marihuanaTotal),
-                new ReporteDTO.SustanciaDTO("Cocaína", cocainaTotal),
-                new ReporteDTO.SustanciaDTO("Benzodiacepinas", benzodiacepinasTotal),
-                new ReporteDTO.SustanciaDTO("Barbitúricos", barbituricosTotal),
-                new ReporteDTO.SustanciaDTO("Carbamatos", carbamatosTotal),
-                new ReporteDTO.SustanciaDTO("Estricnina", estricninaTotal),
-                new ReporteDTO.SustanciaDTO("Cumarinas", cumarinasTotal),
-                new ReporteDTO.SustanciaDTO("Organofosforados", organofosforadosTotal),
-                new ReporteDTO.SustanciaDTO("Misoprostol", misoprostolTotal),
-                new ReporteDTO.SustanciaDTO("Piretrinas", piretrinasTotal)
-        );
+    public List<ReporteDTO.SustanciaDTO> getAnalisisPorSustancia(LocalDate desde, LocalDate hasta, String area) {
+        String areaFiltro = area == null || area.isBlank() ? null : area.trim();
+        return cache.obtener("reporte:sustancia:" + desde + ":" + hasta + ":" + areaFiltro,
+                EnumSet.of(Origen.ASIGNACIONES), () -> contarPorSustancia(desde, hasta, areaFiltro));
+    }
+
+    private List<ReporteDTO.SustanciaDTO> contarPorSustancia(LocalDate desde, LocalDate hasta, String areaFiltro) {
+        Map<String, long[]> conteos = new HashMap<>();
+
+        if (areaFiltro == null) {
+            // ✅ Resumen diario: una fila por sustancia y resultado por día, sin tocar las asignaciones. La clave viene
+            // normalizada ("MARIHUANA:POSITIVO")
+            for (Object[] fila : resumenDiarioRepository.totalesPorClave(ResumenDiario.TIPO_SUSTANCIA, desde, hasta)) {
+                String[] partes = ((String) fila[0]).split(":", 2);
+                if (partes.length == 2 && POSITIVO_NEGATIVO.contains(ResultadoToxicologia.canonico(partes[1]))) {
+                    sumarPosNeg(conteos, partes[0].toLowerCase(Locale.ROOT), partes[1], ((Number) fila[1]).longValue());
+                }
+            }
+        } else {
+            // El resumen no cruza sustancia con área: GROUP BY sobre la tabla normalizada
+            List<Object[]> filas = resultadoToxicologiaRepository.contarPorSustanciaFiltrado(POSITIVO_NEGATIVO,
+                    desde != null ? desde.atStartOfDay() : null,
+                    hasta != null ? hasta.plusDays(1).atStartOfDay() : null,
+                    areaFiltro);
+            for (Object[] fila : filas) {
+                sumarPosNeg(conteos, (String) fila[0], (String) fila[1], ((Number) fila[2]).longValue());
+            }
+        }
+
+        List<ReporteDTO.SustanciaDTO> resultado = new ArrayList<>(SUSTANCIAS.size());
+        for (Map.Entry<String, String> sustancia : SUSTANCIAS) {
+            long[] posNeg = conteos.getOrDefault(sustancia.getKey(), new long[2]);
+            resultado.add(new ReporteDTO.SustanciaDTO(sustancia.getValue(), posNeg[0], posNeg[1]));
+        }
+        return resultado;
+    }
+
+    // Filas guardadas antes de que leerJson unificara la escritura pueden traer "POSITIVO"; el IN y el GROUP BY de
+    // la base ya no distinguen mayúsculas, así que aquí tampoco
+    private static void sumarPosNeg(Map<String, long[]> conteos, String sustancia, String resultado, long cantidad) {
+        conteos.computeIfAbsent(sustancia, k -> new long[2])["Positivo".equalsIgnoreCase(resultado) ? 0 : 1] += cantidad;
     }
 
     @Override
     public List<ReporteDTO.EstadoDTO> getEstados() {
-        // ✅ Contar resultados reales en JSON
-        long toxPos = toxicologiaRepository.countByResultadoToxicologicoContaining("\"Positivo\"");
-        long dosajePos = dosajeRepository.countByCualitativoContaining("Positivo");
+        // ✅ Dosaje y toxicología ya sumados por día en el resumen
+        return cache.obtener("reporte:estados", EnumSet.of(Origen.ASIGNACIONES), () -> {
+            Map<String, Long> totales = totalesPorClave(ResumenDiario.TIPO_ESTADO);
+            return Arrays.asList(
+                    new ReporteDTO.EstadoDTO("Positivo", totales.getOrDefault("Positivo", 0L)),
+                    new ReporteDTO.EstadoDTO("Negativo", totales.getOrDefault("Negativo", 0L))
+            );
+        });
+    }
 
-        long toxNeg = toxicologiaRepository.countByResultadoToxicologicoContaining("\"Negativo\"");
-        long dosajeNeg = dosajeRepository.countByCualitativoContaining("Negativo");
+    @Override
+    public List<ReporteDTO.AreaDTO> getAsignacionesPorArea() {
+        // Filas escritas antes de normalizar las claves pueden tener otra escritura del mismo área: se juntan aquí
+        return cache.obtener("reporte:areas", EnumSet.of(Origen.ASIGNACIONES), () ->
+                totalesPorClave(ResumenDiario.TIPO_AREA).entrySet().stream()
+                        .collect(Collectors.groupingBy(e -> ResumenDiario.normalizar(e.getKey()),
+                                Collectors.summingLong(Map.Entry::getValue)))
+                        .entrySet().stream()
+                        .filter(e -> e.getValue() > 0)
+                        .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                        .map(e -> new ReporteDTO.AreaDTO(e.getKey(), e.getValue()))
+                        .collect(Collectors.toList()));
+    }
 
-        return Arrays.asList(
-                new ReporteDTO.EstadoDTO("Positivo", toxPos + dosajePos),
-                new ReporteDTO.EstadoDTO("Negativo", toxNeg + dosajeNeg)
-        );
+    private Map<String, Long> totalesPorClave(String tipo) {
+        Map<String, Long> totales = new HashMap<>();
+        for (Object[] fila : resumenDiarioRepository.totalesPorClave(tipo, null, null)) {
+            totales.put((String) fila[0], ((Number) fila[1]).longValue());
+        }
+        return totales;
     }
 
     @Override
     public List<ReporteDTO.DocumentoDiaDTO> getDocumentosPorDia() {
-        List<ReporteDTO.DocumentoDiaDTO> result = new ArrayList<>();
+        // ✅ Últimos 7 días con actividad (notificaciones), desde el resumen diario
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM");
+        LocalDate hoy = LocalDate.now();
+        return cache.obtener("reporte:documentos-dia:" + hoy, EnumSet.of(Origen.NOTIFICACIONES), () ->
+                serieResumen(ResumenDiario.TIPO_ACTIVIDAD, null, hoy.minusDays(6), hoy, Granularidad.DIA).entrySet().stream()
+                        .map(e -> new ReporteDTO.DocumentoDiaDTO(e.getKey().format(formatter), e.getValue()))
+                        .collect(Collectors.toList()));
+    }
 
-        for (int i = 6; i >= 0; i--) {
-            LocalDate fecha = LocalDate.now().minusDays(i);
-            long total = 0;
+    // Unos diez años de días: el resumen es diario, así que esto acota también las filas que se leen
+    private static final long MAX_DIAS_SERIE = 3660;
 
-            // ✅ Contar notificaciones por fecha (real actividad)
-            total = notificationRepository.countByTimestampBetween(
-                    fecha.atStartOfDay(),
-                    fecha.plusDays(1).atStartOfDay()
-            );
+    @Override
+    public List<ReporteDTO.DocumentoDiaDTO> getActividad(LocalDate desde, LocalDate hasta, String granularidad) {
+        return serie(ResumenDiario.TIPO_ACTIVIDAD, null, desde, hasta, granularidad, Origen.NOTIFICACIONES);
+    }
+
+    // Asignaciones (dosaje + toxicología) de un perito, por fecha de ingreso del documento
+    @Override
+    public List<ReporteDTO.DocumentoDiaDTO> getAsignacionesPorPerito(Long peritoId, LocalDate desde, LocalDate hasta,
+                                                                     String granularidad) {
+        if (!empleadoRepository.existsById(peritoId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Perito no encontrado");
+        }
+        return serie(ResumenDiario.TIPO_PERITO, peritoId.toString(), desde, hasta, granularidad, Origen.ASIGNACIONES);
+    }
+
+    // Serie de un tipo del resumen (y opcionalmente una sola clave) en el rango pedido, por día, semana o mes
+    private List<ReporteDTO.DocumentoDiaDTO> serie(String tipo, String clave, LocalDate desde, LocalDate hasta,
+                                                   String granularidad, Origen origen) {
+        LocalDate fin = hasta != null ? hasta : LocalDate.now();
+        LocalDate inicio = desde != null ? desde : fin.minusDays(6);
+        if (inicio.isAfter(fin)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "La fecha 'desde' es posterior a 'hasta'");
+        }
+        if (ChronoUnit.DAYS.between(inicio, fin) > MAX_DIAS_SERIE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "El rango no puede superar " + MAX_DIAS_SERIE + " días");
+        }
+
+        // Cada punto lleva la fecha de inicio de su período (lunes de la semana, día 1 del mes) y lo cuenta entero
+        Granularidad g = Granularidad.de(granularidad);
+        return cache.obtener("reporte:serie:" + tipo + ":" + clave + ":" + g.inicio(inicio) + ":" + fin + ":" + g,
+                EnumSet.of(origen), () -> serieResumen(tipo, clave, inicio, fin, g).entrySet().stream()
+                        .map(e -> new ReporteDTO.DocumentoDiaDTO(e.getKey().toString(), e.getValue()))
+                        .collect(Collectors.toList()));
+    }
+
+    private enum Granularidad {
+        DIA, SEMANA, MES;
 
-            result.add(new ReporteDTO.DocumentoDiaDTO(fecha.format(formatter), total));
+        static Granularidad de(String valor) {
+            if (valor == null || valor.isBlank()) return DIA;
+            return switch (valor.trim().toLowerCase()) {
+                case "dia", "día", "day" -> DIA;
+                case "semana", "week" -> SEMANA;
+                case "mes", "month" -> MES;
+                default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Granularidad no válida: " + valor + " (dia, semana o mes)");
+            };
         }
 
-        return result;
+        LocalDate inicio(LocalDate fecha) {
+            return switch (this) {
+                case DIA -> fecha;
+                case SEMANA -> fecha.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MES -> fecha.withDayOfMonth(1);
+            };
+        }
+
+        LocalDate siguiente(LocalDate inicio) {
+            return switch (this) {
+                case DIA -> inicio.plusDays(1);
+                case SEMANA -> inicio.plusWeeks(1);
+                case MES -> inicio.plusMonths(1);
+            };
+        }
+    }
+
+    // Conteo diario del resumen, sumado aquí al período pedido; los períodos sin actividad quedan en 0.
+    // Los dos extremos se cuentan completos, igual que dice la etiqueta, aunque 'desde' o 'hasta' caigan a mitad
+    // de período: el primero desde su inicio, el último hasta su fin o hasta hoy si todavía no terminó
+    private Map<LocalDate, Long> serieResumen(String tipo, String clave, LocalDate desde, LocalDate hasta,
+                                              Granularidad granularidad) {
+        LocalDate inicio = granularidad.inicio(desde);
+        LocalDate hoy = LocalDate.now();
+        LocalDate finUltimo = granularidad.siguiente(granularidad.inicio(hasta)).minusDays(1);
+        LocalDate fin = !hasta.isBefore(hoy) ? hasta : finUltimo.isBefore(hoy) ? finUltimo : hoy;
+        Map<LocalDate, Long> serie = new LinkedHashMap<>();
+        for (LocalDate p = inicio; !p.isAfter(hasta); p = granularidad.siguiente(p)) {
+            serie.put(p, 0L);
+        }
+
+        List<Object[]> filas = resumenDiarioRepository.totalesPorFecha(tipo, clave, inicio, fin);
+        for (Object[] fila : filas) {
+            serie.merge(granularidad.inicio((LocalDate) fila[0]), ((Number) fila[1]).longValue(), Long::sum);
+        }
+        return serie;
     }
 
     @Override
     public List<ReporteDTO.EmpleadoDTO> getEmpleadosProductividad() {
-        // ✅ Contar notificaciones por emisor (quien completó la tarea)
-        List<Object[]> resultados = notificationRepository.countByEmisorGrouped();
-
-        return resultados.stream()
-                .map(row -> new ReporteDTO.EmpleadoDTO(
-                        (String) row[1],  // nombre
-                        (String) row[2],  // apellido
-                        ((Number) row[3]).longValue() // total
-                ))
+        return cache.obtener("reporte:productividad", EnumSet.of(Origen.NOTIFICACIONES, Origen.EMPLEADOS),
+                this::calcularProductividad);
+    }
+
+    private List<ReporteDTO.EmpleadoDTO> calcularProductividad() {
+        // ✅ Notificaciones por emisor (quien completó la tarea), desde el resumen diario
+        List<Map.Entry<Long, Long>> top = totalesPorClave(ResumenDiario.TIPO_EMISOR).entrySet().stream()
+                .filter(e -> e.getValue() > 0)
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
                 .limit(5)
+                .map(e -> Map.entry(Long.valueOf(e.getKey()), e.getValue()))
+                .toList();
+
+        Map<Long, Empleado> empleados = empleadoRepository.findAllById(top.stream().map(Map.Entry::getKey).toList())
+                .stream().collect(Collectors.toMap(Empleado::getId, e -> e));
+        return top.stream()
+                .filter(e -> empleados.containsKey(e.getKey()))
+                .map(e -> new ReporteDTO.EmpleadoDTO(
+                        empleados.get(e.getKey()).getNombre(),
+                        empleados.get(e.getKey()).getApellido(),
+                        e.getValue()))
                 .collect(Collectors.toList());
     }
 
+    // Excel del período: una hoja por área con cada asignación (dosaje y toxicología), su documento y el
+    // resultado, más una hoja con los documentos que aún no tienen asignación. mes = 0 exporta el año completo.
     @Override
-    public byte[] generarExcel(int mes, int año) throws IOException {
-        try (Workbook workbook = new XSSFWorkbook()) {
-            Sheet sheet = workbook.createSheet("Reporte");
+    @Transactional(readOnly = true)
+    public void escribirExcel(int mes, int año, OutputStream salida) throws IOException {
+        LocalDateTime desde = mes == 0 ? LocalDate.of(año, 1, 1).atStartOfDay() : LocalDate.of(año, mes, 1).atStartOfDay();
+        LocalDateTime hasta = mes == 0 ? desde.plusYears(1) : desde.plusMonths(1);
 
-            Row header = sheet.createRow(0);
-            header.createCell(0).setCellValue("Métrica");
-            header.createCell(1).setCellValue("Valor");
+        // Solo las últimas filasEnMemoria filas de cada hoja quedan en el heap; el resto se vuelca a un temporal
+        SXSSFWorkbook workbook = new SXSSFWorkbook(filasExcelEnMemoria);
+        workbook.setCompressTempFiles(true);
+        try {
+            HojasReporte hojas = new HojasReporte(workbook);
+            try (Stream<FilaReporteMensualDTO> filas = dosajeRepository.streamReporteMensual(desde, hasta)) {
+                filas.forEach(hojas::agregar);
+            }
+            try (Stream<FilaReporteMensualDTO> filas = toxicologiaRepository.streamReporteMensual(desde, hasta)) {
+                filas.forEach(hojas::agregar);
+            }
+            try (Stream<DocumentoExportacionDTO> docs = documentoRepository.streamSinAsignacion(desde, hasta)) {
+                docs.forEach(hojas::agregarSinAsignacion);
+            }
+            hojas.cerrar();
+
+            workbook.write(salida);
+            System.out.println("📊 Excel " + (mes == 0 ? "" : mes + "/") + año + ": " + hojas.filas + " filas en "
+                    + workbook.getNumberOfSheets() + " hojas");
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    private static final String[] COLUMNAS = {"Tipo", "Asignación", "Estado", "Resultado", "Documento", "Fecha ingreso",
+            "Nombres y apellidos", "DNI", "Edad", "Tipo de muestra", "N° informe", "Perito"};
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    // Hojas del workbook por área, creadas a medida que aparecen; cada una recuerda su próxima fila libre
+    private static final class HojasReporte {
+        private final SXSSFWorkbook workbook;
+        private final CellStyle encabezado;
+        private final CellStyle fecha;
+        private final Map<String, SXSSFSheet> porArea = new HashMap<>();
+        private final Map<SXSSFSheet, Integer> siguienteFila = new HashMap<>();
+        private long filas;
+
+        private HojasReporte(SXSSFWorkbook workbook) {
+            this.workbook = workbook;
+            Font negrita = workbook.createFont();
+            negrita.setBold(true);
+            this.encabezado = workbook.createCellStyle();
+            this.encabezado.setFont(negrita);
+            this.fecha = workbook.createCellStyle();
+            this.fecha.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("dd/mm/yyyy hh:mm"));
+        }
 
-            sheet.createRow(1).createCell(0).setCellValue("Total Empleados");
-            sheet.getRow(1).createCell(1).setCellValue(getTotalEmpleados());
+        private void agregar(FilaReporteMensualDTO f) {
+            String area = f.area() == null || f.area().isBlank() ? "Sin área" : f.area().trim();
+            String perito = f.peritoNombre() == null ? null
+                    : (f.peritoNombre() + " " + (f.peritoApellido() == null ? "" : f.peritoApellido())).trim();
+            String resultado = "Dosaje".equals(f.tipo()) ? f.resultado() : resumirToxicologia(f.resultado());
+            escribir(hoja(area), f.tipo(), f.asignacionId(), f.estado(), resultado, f.documentoId(), f.fechaIngreso(),
+                    f.nombresyapellidos(), f.dni(), f.edad(), f.tipoMuestra(), f.numeroInforme(), perito);
+        }
 
-            sheet.createRow(2).createCell(0).setCellValue("Total Documentos");
-            sheet.getRow(2).createCell(1).setCellValue(getTotalDocumentos());
+        private void agregarSinAsignacion(DocumentoExportacionDTO d) {
+            escribir(hoja("Sin asignación"), "Documento", null, null, null, d.id(), d.fechaIngreso(),
+                    d.nombresyapellidos(), d.dni(), d.edad(), d.tipoMuestra(), d.numeroInforme(), null);
+        }
 
-            try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-                workbook.write(out);
-                return out.toByteArray();
+        private void escribir(SXSSFSheet hoja, Object... valores) {
+            int numero = siguienteFila.merge(hoja, 1, Integer::sum) - 1;
+            Row row = hoja.createRow(numero);
+            for (int i = 0; i < valores.length; i++) {
+                Object valor = valores[i];
+                if (valor == null) continue;
+                Cell cell = row.createCell(i);
+                if (valor instanceof Number n) {
+                    cell.setCellValue(n.doubleValue());
+                } else if (valor instanceof LocalDateTime t) {
+                    cell.setCellValue(t);
+                    cell.setCellStyle(fecha);
+                } else {
+                    cell.setCellValue(valor.toString());
+                }
             }
+            filas++;
+        }
+
+        private SXSSFSheet hoja(String area) {
+            // Excel no distingue mayúsculas en los nombres de hoja
+            return porArea.computeIfAbsent(area.toLowerCase(Locale.ROOT), k -> {
+                String nombre = WorkbookUtil.createSafeSheetName(area);
+                for (int i = 2; workbook.getSheet(nombre) != null; i++) {
+                    nombre = WorkbookUtil.createSafeSheetName(area.substring(0, Math.min(area.length(), 26)) + " (" + i + ")");
+                }
+                SXSSFSheet hoja = workbook.createSheet(nombre);
+                Row header = hoja.createRow(0);
+                for (int i = 0; i < COLUMNAS.length; i++) {
+                    Cell cell = header.createCell(i);
+                    cell.setCellValue(COLUMNAS[i]);
+                    cell.setCellStyle(encabezado);
+                    // Ancho fijo: autoSizeColumn necesitaría todas las filas en memoria
+                    hoja.setColumnWidth(i, (i == 3 || i == 6 ? 40 : 16) * 256);
+                }
+                hoja.createFreezePane(0, 1);
+                siguienteFila.put(hoja, 1);
+                return hoja;
+            });
+        }
+
+        private void cerrar() {
+            if (porArea.isEmpty()) {
+                hoja("Sin datos");
+            }
+        }
+    }
+
+    // {"marihuana":"Positivo","cocaina":"Negativo",...} → "marihuana: Positivo, cocaina: Negativo"
+    private static String resumirToxicologia(String json) {
+        if (json == null || json.isBlank()) return null;
+        try {
+            Map<String, Object> resultados = JSON.readValue(json, new TypeReference<LinkedHashMap<String, Object>>() { });
+            return resultados.entrySet().stream()
+                    .filter(e -> e.getValue() != null && !e.getValue().toString().isBlank())
+                    .map(e -> e.getKey() + ": " + e.getValue())
+                    .collect(Collectors.joining(", "));
+        } catch (IOException e) {
+            return json;
         }
     }
 
@@ -169,33 +426,91 @@ public class ReporteServiceImpl implements ReporteService {
                 "\nTotal Documentos: " + getTotalDocumentos();
         return content.getBytes();
     }
+    private static final int MAX_BORDES_HISTOGRAMA = 20;
+    // Bordes por defecto: se devuelven con los nombres que tuvo siempre el reporte
+    private static final List<BigDecimal> BORDES_HISTORICOS = List.of(BigDecimal.ONE, BigDecimal.valueOf(2));
+    private static final List<String> RANGOS_HISTORICOS = List.of("Bajo (< 1)", "Medio (1-2)", "Alto (> 2)");
+
+    // Histograma de cualitativo_valor con los cortes del reporte original: "< primer borde", tramos cerrados por
+    // arriba (el primero incluye además el primer borde) y "> último borde"; con un solo borde, "< b" y ">= b".
+    // Un solo GROUP BY en la base; el servidor solo recibe un conteo por rango.
     @Override
-    public List<ReporteDTO.RangoCualitativoDTO> getRangosCualitativos() {
-        List<AsignacionDosaje> asignaciones = dosajeRepository.findAll();
-
-        long bajo = 0, medio = 0, alto = 0;
-
-        for (AsignacionDosaje a : asignaciones) {
-            if (a.getCualitativo() != null) {
-                try {
-                    double valor = Double.parseDouble(a.getCualitativo());
-                    if (valor < 1) {
-                        bajo++;
-                    } else if (valor <= 2) {
-                        medio++;
-                    } else {
-                        alto++;
-                    }
-                } catch (NumberFormatException e) {
-                    // Ignorar valores no numéricos
-                }
+    public List<ReporteDTO.RangoCualitativoDTO> getRangosCualitativos(List<BigDecimal> bordes, LocalDate desde,
+                                                                      LocalDate hasta, Long peritoId) {
+        if (bordes == null || bordes.isEmpty() || bordes.size() > MAX_BORDES_HISTOGRAMA) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Indique entre 1 y " + MAX_BORDES_HISTOGRAMA + " bordes");
+        }
+        for (int i = 0; i < bordes.size(); i++) {
+            if (bordes.get(i) == null || (i > 0 && bordes.get(i - 1).compareTo(bordes.get(i)) >= 0)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Los bordes deben ser crecientes y sin repetir");
             }
         }
+        String clave = "reporte:rangos:" + bordes.stream().map(ReporteServiceImpl::texto).collect(Collectors.joining(","))
+                + ":" + desde + ":" + hasta + ":" + peritoId;
+        return cache.obtener(clave, EnumSet.of(Origen.ASIGNACIONES), () -> histograma(bordes, desde, hasta, peritoId));
+    }
+
+    private List<ReporteDTO.RangoCualitativoDTO> histograma(List<BigDecimal> bordes, LocalDate desde, LocalDate hasta,
+                                                            Long peritoId) {
+        StringBuilder sql = new StringBuilder("SELECT CASE");
+        List<Object> parametros = new ArrayList<>(bordes);
+        for (int i = 0; i < bordes.size(); i++) {
+            sql.append(i == 0 ? " WHEN a.cualitativo_valor < ? THEN " : " WHEN a.cualitativo_valor <= ? THEN ").append(i);
+        }
+        sql.append(" ELSE ").append(bordes.size()).append(" END AS rango, COUNT(*) AS cantidad FROM asignaciones_dosaje a");
+        if (desde != null || hasta != null) sql.append(" JOIN documentos d ON d.id = a.documento_id");
+        sql.append(" WHERE a.cualitativo_valor IS NOT NULL");
+        if (desde != null) {
+            sql.append(" AND d.fecha_ingreso >= ?");
+            parametros.add(desde.atStartOfDay());
+        }
+        if (hasta != null) {
+            sql.append(" AND d.fecha_ingreso < ?");
+            parametros.add(hasta.plusDays(1).atStartOfDay());
+        }
+        if (peritoId != null) {
+            sql.append(" AND a.empleado_id = ?");
+            parametros.add(peritoId);
+        }
+        sql.append(" GROUP BY rango");
+
+        long[] conteos = new long[bordes.size() + 1];
+        jdbcTemplate.query(sql.toString(), rs -> {
+            conteos[rs.getInt(1)] = rs.getLong(2);
+        }, parametros.toArray());
+
+        List<String> nombres = nombresRangos(bordes);
+        List<ReporteDTO.RangoCualitativoDTO> rangos = new ArrayList<>(conteos.length);
+        for (int i = 0; i < conteos.length; i++) {
+            rangos.add(new ReporteDTO.RangoCualitativoDTO(nombres.get(i), conteos[i]));
+        }
+        return rangos;
+    }
+
+    private static List<String> nombresRangos(List<BigDecimal> bordes) {
+        if (mismosBordes(bordes, BORDES_HISTORICOS)) return RANGOS_HISTORICOS;
+
+        List<String> nombres = new ArrayList<>(bordes.size() + 1);
+        nombres.add("< " + texto(bordes.get(0)));
+        for (int i = 1; i < bordes.size(); i++) {
+            nombres.add(texto(bordes.get(i - 1)) + " - " + texto(bordes.get(i)));
+        }
+        String ultimo = texto(bordes.get(bordes.size() - 1));
+        nombres.add(bordes.size() == 1 ? ">= " + ultimo : "> " + ultimo);
+        return nombres;
+    }
+
+    // 1 y 1.0 son el mismo borde
+    private static boolean mismosBordes(List<BigDecimal> a, List<BigDecimal> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i).compareTo(b.get(i)) != 0) return false;
+        }
+        return true;
+    }
 
-        return Arrays.asList(
-                new ReporteDTO.RangoCualitativoDTO("Bajo (< 1)", bajo),
-                new ReporteDTO.RangoCualitativoDTO("Medio (1-2)", medio),
-                new ReporteDTO.RangoCualitativoDTO("Alto (> 2)", alto)
-        );
+    private static String texto(BigDecimal valor) {
+        return valor.stripTrailingZeros().toPlainString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,204 @@
+package com.example.sistema_web.service;
+
+import com.example.sistema_web.model.AsignacionDosaje;
+import com.example.sistema_web.model.AsignacionToxicologia;
+import com.example.sistema_web.model.Documento;
+import com.example.sistema_web.model.Empleado;
+import com.example.sistema_web.model.Notification;
+import com.example.sistema_web.model.ResultadoToxicologia;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.example.sistema_web.model.ResumenDiario.*;
+
+// Mantiene resumen_diario. Cada asignación o notificación "aporta" +1 a unas cuantas claves del día; al guardar se
+// suma la diferencia entre lo que aportaba antes y lo que aporta ahora, dentro de la misma transacción. La
+// reconstrucción usa exactamente las mismas reglas, así que ambos caminos dan los mismos números.
+@Service
+public class ResumenDiarioService {
+
+    private static final String SUMAR = "INSERT INTO resumen_diario (tipo, fecha, clave, cantidad) VALUES (?, ?, ?, ?) AS nuevo "
+            + "ON DUPLICATE KEY UPDATE cantidad = cantidad + nuevo.cantidad";
+
+    public record Clave(String tipo, LocalDate fecha, String clave) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transaccion;
+    private final ApplicationEventPublisher eventos;
+    private final boolean reconstruirSiVacio;
+    private final AtomicBoolean reconstruyendo = new AtomicBoolean();
+
+    public ResumenDiarioService(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                ApplicationEventPublisher eventos,
+                                @Value("${reportes.resumen.reconstruir-si-vacio:true}") boolean reconstruirSiVacio) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transaccion = new TransactionTemplate(transactionManager);
+        this.eventos = eventos;
+        this.reconstruirSiVacio = reconstruirSiVacio;
+    }
+
+    // --- Aportes de cada fila de origen ---
+
+    public Map<Clave, Long> aportes(AsignacionDosaje a) {
+        return aportesDosaje(fechaIngreso(a.getDocumento()), a.getArea(), idEmpleado(a.getEmpleado()), a.getCualitativo());
+    }
+
+    public Map<Clave, Long> aportes(AsignacionToxicologia a) {
+        return aportesToxicologia(fechaIngreso(a.getDocumento()), a.getArea(), idEmpleado(a.getEmpleado()),
+                a.getResultadoToxicologico());
+    }
+
+    public Map<Clave, Long> aportes(Notification n) {
+        Map<Clave, Long> aportes = new HashMap<>();
+        if (n.getTimestamp() == null) return aportes;
+        LocalDate fecha = n.getTimestamp().toLocalDate();
+        sumar(aportes, TIPO_ACTIVIDAD, fecha, "");
+        Long emisorId = idEmpleado(n.getEmisor());
+        if (emisorId != null) sumar(aportes, TIPO_EMISOR, fecha, emisorId.toString());
+        return aportes;
+    }
+
+    private static Map<Clave, Long> aportesDosaje(LocalDate fecha, String area, Long peritoId, String cualitativo) {
+        Map<Clave, Long> aportes = new HashMap<>();
+        aportesComunes(aportes, fecha, area, peritoId);
+        if (cualitativo != null && cualitativo.contains("Positivo")) sumar(aportes, TIPO_ESTADO, fecha, "Positivo");
+        if (cualitativo != null && cualitativo.contains("Negativo")) sumar(aportes, TIPO_ESTADO, fecha, "Negativo");
+        return aportes;
+    }
+
+    private static Map<Clave, Long> aportesToxicologia(LocalDate fecha, String area, Long peritoId, String json) {
+        Map<Clave, Long> aportes = new HashMap<>();
+        aportesComunes(aportes, fecha, area, peritoId);
+        // Misma regla que la tabla normalizada: una fila por sustancia con resultado
+        Map<String, String> resultados = ResultadoToxicologia.leerJson(json);
+        resultados.forEach((sustancia, resultado) ->
+                sumar(aportes, TIPO_SUSTANCIA, fecha, normalizar(sustancia + ":" + resultado)));
+        if (resultados.containsValue("Positivo")) sumar(aportes, TIPO_ESTADO, fecha, "Positivo");
+        if (resultados.containsValue("Negativo")) sumar(aportes, TIPO_ESTADO, fecha, "Negativo");
+        return aportes;
+    }
+
+    private static void aportesComunes(Map<Clave, Long> aportes, LocalDate fecha, String area, Long peritoId) {
+        if (area != null && !area.isBlank()) sumar(aportes, TIPO_AREA, fecha, normalizar(area));
+        if (peritoId != null) sumar(aportes, TIPO_PERITO, fecha, peritoId.toString());
+    }
+
+    private static void sumar(Map<Clave, Long> aportes, String tipo, LocalDate fecha, String clave) {
+        String recortada = clave.length() > MAX_CLAVE ? clave.substring(0, MAX_CLAVE) : clave;
+        aportes.merge(new Clave(tipo, fecha, recortada), 1L, Long::sum);
+    }
+
+    // Documentos antiguos sin fecha de ingreso cuentan en SIN_FECHA, no se pierden
+    private static LocalDate fechaIngreso(Documento documento) {
+        return documento != null && documento.getFechaIngreso() != null ? documento.getFechaIngreso().toLocalDate() : SIN_FECHA;
+    }
+
+    private static Long idEmpleado(Empleado empleado) {
+        return empleado != null ? empleado.getId() : null;
+    }
+
+    // --- Mantenimiento incremental ---
+
+    // Suma (despues - antes) a las filas del resumen. Usar Map.of() como "antes" en altas y como "despues" en bajas.
+    @Transactional
+    public void aplicar(Map<Clave, Long> antes, Map<Clave, Long> despues) {
+        Map<Clave, Long> diferencia = new HashMap<>(despues);
+        antes.forEach((clave, cantidad) -> diferencia.merge(clave, -cantidad, Long::sum));
+        diferencia.values().removeIf(cantidad -> cantidad == 0);
+        if (diferencia.isEmpty()) return;
+        escribir(diferencia);
+    }
+
+    // Siempre con SUMAR, también en la reconstrucción: si dos claves que en Java son distintas resultan iguales
+    // para la colación de la base, se suman en una fila en vez de romper la restricción única
+    private void escribir(Map<Clave, Long> cantidades) {
+        List<Object[]> filas = new ArrayList<>(cantidades.size());
+        // Orden fijo: dos transacciones que tocan las mismas filas las bloquean en el mismo orden
+        cantidades.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey(Comparator.comparing(Clave::tipo)
+                        .thenComparing(Clave::fecha).thenComparing(Clave::clave)))
+                .forEach(e -> filas.add(new Object[]{e.getKey().tipo(), Date.valueOf(e.getKey().fecha()),
+                        e.getKey().clave(), e.getValue()}));
+        jdbcTemplate.batchUpdate(SUMAR, filas);
+    }
+
+    // --- Reconstrucción completa ---
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconstruirSiHaceFalta() {
+        if (!reconstruirSiVacio) return;
+        try {
+            Integer filas = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM resumen_diario", Integer.class);
+            if (filas != null && filas == 0) reconstruir();
+        } catch (Exception e) {
+            System.err.println("⚠️ No se pudo reconstruir el resumen diario al iniciar: " + e.getMessage());
+        }
+    }
+
+    // Vuelve a calcular todo el resumen desde asignaciones y notificaciones; devuelve las filas escritas
+    public int reconstruir() {
+        if (!reconstruyendo.compareAndSet(false, true)) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Ya hay una reconstrucción del resumen en curso");
+        }
+        try {
+            long inicio = System.currentTimeMillis();
+            Integer escritas = transaccion.execute(estado -> {
+                // El DELETE va primero: espera a las transacciones que estén sumando y las lecturas ya las ven
+                jdbcTemplate.update("DELETE FROM resumen_diario");
+
+                Map<Clave, Long> totales = new HashMap<>();
+                jdbcTemplate.query("SELECT d.fecha_ingreso, a.area, a.empleado_id, a.cualitativo "
+                        + "FROM asignaciones_dosaje a JOIN documentos d ON d.id = a.documento_id", rs -> {
+                    aportesDosaje(fecha(rs.getTimestamp(1)), rs.getString(2), rs.getObject(3, Long.class),
+                            rs.getString(4)).forEach((k, v) -> totales.merge(k, v, Long::sum));
+                });
+                jdbcTemplate.query("SELECT d.fecha_ingreso, a.area, a.empleado_id, a.resultado_toxicologico "
+                        + "FROM asignaciones_toxicologia a JOIN documentos d ON d.id = a.documento_id", rs -> {
+                    aportesToxicologia(fecha(rs.getTimestamp(1)), rs.getString(2), rs.getObject(3, Long.class),
+                            rs.getString(4)).forEach((k, v) -> totales.merge(k, v, Long::sum));
+                });
+                // Las notificaciones no tienen más regla que el día y el emisor: se agregan en la base
+                jdbcTemplate.query("SELECT CAST(created_at AS DATE), emisor_id, COUNT(*) FROM notifications "
+                        + "GROUP BY CAST(created_at AS DATE), emisor_id", rs -> {
+                    LocalDate fecha = rs.getDate(1).toLocalDate();
+                    long cantidad = rs.getLong(3);
+                    totales.merge(new Clave(TIPO_ACTIVIDAD, fecha, ""), cantidad, Long::sum);
+                    Long emisorId = rs.getObject(2, Long.class);
+                    if (emisorId != null) totales.merge(new Clave(TIPO_EMISOR, fecha, emisorId.toString()), cantidad, Long::sum);
+                });
+
+                if (!totales.isEmpty()) escribir(totales);
+                return totales.size();
+            });
+            // Lo cacheado se calculó con el resumen anterior
+            eventos.publishEvent(new CacheDashboard.Modificacion(CacheDashboard.Origen.ASIGNACIONES));
+            eventos.publishEvent(new CacheDashboard.Modificacion(CacheDashboard.Origen.NOTIFICACIONES));
+            System.out.println("📊 Resumen diario reconstruido: " + escritas + " filas en "
+                    + (System.currentTimeMillis() - inicio) + " ms");
+            return escritas != null ? escritas : 0;
+        } finally {
+            reconstruyendo.set(false);
+        }
+    }
+
+    private static LocalDate fecha(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime().toLocalDate() : SIN_FECHA;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.sistema_web.storage;
+
+import com.example.sistema_web.model.ArchivoAdjunto;
+import jakarta.persistence.Table;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Ruta de lectura legada + migración en segundo plano de la antigua columna LONGBLOB "archivo" al BlobStore
+@Component
+public class BlobMigrator {
+
+    private static final List<String> TABLAS = List.of("documentos", "oficio_dosaje", "oficio_toxicologia");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlobStore blobStore;
+    private final boolean habilitado;
+    private final int tamanoLote;
+
+    private final Map<String, Boolean> columnaLegada = new ConcurrentHashMap<>();
+    private final Set<String> tablasMigradas = ConcurrentHashMap.newKeySet();
+
+    public BlobMigrator(JdbcTemplate jdbcTemplate,
+                        BlobStore blobStore,
+                        @Value("${blobstore.migracion.habilitada:true}") boolean habilitado,
+                        @Value("${blobstore.migracion.lote:20}") int tamanoLote) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.blobStore = blobStore;
+        this.habilitado = habilitado;
+        this.tamanoLote = tamanoLote;
+    }
+
+    // Lectura legada: si la fila aún tiene bytes en la columna antigua, se mueven al BlobStore en ese momento
+    public String migrar(ArchivoAdjunto entidad) {
+        Table tabla = Hibernate.getClass(entidad).getAnnotation(Table.class);
+        if (tabla == null || entidad.getId() == null) return null;
+        return migrar(tabla.name(), entidad.getId());
+    }
+
+    @Scheduled(initialDelayString = "${blobstore.migracion.retraso-inicial-ms:30000}",
+            fixedDelayString = "${blobstore.migracion.intervalo-ms:60000}")
+    public void migrarPendientes() {
+        if (!habilitado) return;
+
+        for (String tabla : TABLAS) {
+            if (tablasMigradas.contains(tabla) || !tieneColumnaLegada(tabla)) continue;
+
+            List<Long> pendientes = jdbcTemplate.queryForList(
+                    "SELECT id FROM " + tabla + " WHERE archivo IS NOT NULL AND archivo_hash IS NULL LIMIT ?",
+                    Long.class, tamanoLote);
+
+            int migrados = 0;
+            for (Long id : pendientes) {
+                try {
+                    if (migrar(tabla, id) != null) migrados++;
+                } catch (Exception e) {
+                    System.err.println("⚠️ No se pudo migrar " + tabla + " ID " + id + ": " + e.getMessage());
+                }
+            }
+
+            if (pendientes.isEmpty()) {
+                // Filas que recibieron un archivo nuevo antes de migrar: el blob antiguo ya no se usa
+                int limpiadas = jdbcTemplate.update(
+                        "UPDATE " + tabla + " SET archivo = NULL WHERE archivo IS NOT NULL AND archivo_hash IS NOT NULL");
+                if (limpiadas == 0) {
+                    tablasMigradas.add(tabla);
+                    System.out.println("✅ Migración de blobs completa para la tabla " + tabla);
+                }
+            } else {
+                System.out.println("🚚 Migrados " + migrados + "/" + pendientes.size() + " archivos de " + tabla + " al BlobStore");
+            }
+        }
+    }
+
+    private String migrar(String tabla, Long id) {
+        if (tablasMigradas.contains(tabla) || !tieneColumnaLegada(tabla)) return null;
+
+        List<byte[]> filas = jdbcTemplate.query(
+                "SELECT archivo FROM " + tabla + " WHERE id = ? AND archivo IS NOT NULL",
+                (rs, i) -> rs.getBytes(1), id);
+        if (filas.isEmpty() || filas.get(0) == null || filas.get(0).length == 0) return null;
+
+        String hash = blobStore.guardar(filas.get(0));
+
+        // Solo se enlaza si nadie guardó un archivo nuevo mientras tanto
+        int actualizadas = jdbcTemplate.update(
+                "UPDATE " + tabla + " SET archivo_hash = ?, archivo = NULL WHERE id = ? AND archivo_hash IS NULL",
+                hash, id);
+        if (actualizadas == 0) {
+            return jdbcTemplate.queryForObject("SELECT archivo_hash FROM " + tabla + " WHERE id = ?", String.class, id);
+        }
+        return hash;
+    }
+
+    private boolean tieneColumnaLegada(String tabla) {
+        return columnaLegada.computeIfAbsent(tabla, t -> {
+            try {
+                Integer total = jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM information_schema.columns " +
+                                "WHERE table_schema = SCHEMA() AND table_name = ? AND column_name = 'archivo'",
+                        Integer.class, t);
+                return total != null && total > 0;
+            } catch (Exception e) {
+                return false;
+            }
+        });
+    }
+}
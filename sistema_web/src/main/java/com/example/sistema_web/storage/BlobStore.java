@@ -0,0 +1,40 @@
+package com.example.sistema_web.storage;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+// Almacén de archivos direccionado por contenido: la clave de cada blob es el SHA-256 de sus bytes
+public interface BlobStore {
+
+    // Guarda el contenido (si ya existe un blob idéntico no se vuelve a escribir) y devuelve su hash
+    String guardar(byte[] contenido);
+
+    // Igual que el anterior pero sin cargar el contenido completo en memoria
+    String guardar(InputStream in) throws IOException;
+
+    byte[] leer(String hash);
+
+    InputStream abrir(String hash) throws IOException;
+
+    // Vista de solo lectura para servir el blob por HTTP sin cargarlo en memoria (tamaño, fecha, rangos)
+    Resource recurso(String hash);
+
+    boolean existe(String hash);
+
+    static String sha256(byte[] contenido) {
+        return HexFormat.of().formatHex(nuevoDigest().digest(contenido));
+    }
+
+    static MessageDigest nuevoDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible en la JVM", e);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.sistema_web.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+// Backend local: cada blob vive en <raiz>/<2 primeros caracteres del hash>/<hash>
+@Component
+public class FileSystemBlobStore implements BlobStore {
+
+    private static final Pattern HASH_VALIDO = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path raiz;
+    private final Path temporales;
+
+    public FileSystemBlobStore(@Value("${blobstore.local.path:data/blobs}") String ruta) {
+        this.raiz = Paths.get(ruta).toAbsolutePath().normalize();
+        this.temporales = raiz.resolve("tmp");
+        try {
+            Files.createDirectories(temporales);
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo crear el directorio de blobs: " + raiz, e);
+        }
+        System.out.println("🗄️ BlobStore local en: " + raiz);
+    }
+
+    @Override
+    public String guardar(byte[] contenido) {
+        String hash = BlobStore.sha256(contenido);
+        Path destino = ruta(hash);
+        if (Files.exists(destino)) {
+            return hash;
+        }
+        try {
+            Path tmp = Files.createTempFile(temporales, "blob-", ".tmp");
+            Files.write(tmp, contenido);
+            mover(tmp, destino);
+            return hash;
+        } catch (IOException e) {
+            throw new RuntimeException("Error al guardar blob " + hash, e);
+        }
+    }
+
+    @Override
+    public String guardar(InputStream in) throws IOException {
+        Path tmp = Files.createTempFile(temporales, "blob-", ".tmp");
+        try {
+            MessageDigest digest = BlobStore.nuevoDigest();
+            try (DigestInputStream din = new DigestInputStream(in, digest);
+                 OutputStream out = Files.newOutputStream(tmp)) {
+                din.transferTo(out);
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            Path destino = ruta(hash);
+            if (Files.exists(destino)) {
+                Files.deleteIfExists(tmp);
+            } else {
+                mover(tmp, destino);
+            }
+            return hash;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+    }
+
+    @Override
+    public byte[] leer(String hash) {
+        try {
+            return Files.readAllBytes(ruta(hash));
+        } catch (NoSuchFileException e) {
+            throw new RuntimeException("Blob no encontrado: " + hash, e);
+        } catch (IOException e) {
+            throw new RuntimeException("Error al leer blob " + hash, e);
+        }
+    }
+
+    @Override
+    public InputStream abrir(String hash) throws IOException {
+        return Files.newInputStream(ruta(hash));
+    }
+
+    @Override
+    public Resource recurso(String hash) {
+        Path archivo = ruta(hash);
+        if (!Files.exists(archivo)) {
+            throw new RuntimeException("Blob no encontrado: " + hash);
+        }
+        return new FileSystemResource(archivo);
+    }
+
+    @Override
+    public boolean existe(String hash) {
+        return hash != null && HASH_VALIDO.matcher(hash).matches() && Files.exists(ruta(hash));
+    }
+
+    private Path ruta(String hash) {
+        if (hash == null || !HASH_VALIDO.matcher(hash).matches()) {
+            throw new IllegalArgumentException("Hash de blob inválido: " + hash);
+        }
+        return raiz.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private void mover(Path tmp, Path destino) throws IOException {
+        Files.createDirectories(destino.getParent());
+        try {
+            Files.move(tmp, destino, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // Otro hilo guardó el mismo contenido al mismo tiempo: el blob ya es válido
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.sistema_web.word;
+
+import fr.opensagres.xdocreport.core.XDocReportException;
+import fr.opensagres.xdocreport.document.IXDocReport;
+import fr.opensagres.xdocreport.document.registry.XDocReportRegistry;
+import fr.opensagres.xdocreport.template.TemplateEngineKind;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Reportes XDocReport ya compilados (docx preprocesado + plantillas Velocity), por hash del .docx de origen. Un mismo
+// hash es siempre el mismo contenido, así que la plantilla base y los oficios que no cambiaron desde la última
+// sincronización reutilizan el reporte sin volver a compilarlo.
+//
+// Cada reporte queda registrado en XDocReportRegistry con id "blob-<hash>": el motor Velocity solo guarda las
+// plantillas parseadas de los reportes que el registro conoce (sin registro, cada process() vuelve a parsear).
+// Al salir del LRU se desregistra, para que el registro global no crezca sin límite.
+@Component
+public class CacheReportes {
+
+    private static final String PREFIJO_ID = "blob-";
+
+    @FunctionalInterface
+    public interface Fuente {
+        InputStream abrir() throws IOException;
+    }
+
+    private final int maxReportes;
+    private final Map<String, IXDocReport> reportes;
+
+    public CacheReportes(@Value("${word.reportes.max-en-cache:50}") int maxReportes) {
+        this.maxReportes = Math.max(1, maxReportes);
+        this.reportes = new LinkedHashMap<>(32, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IXDocReport> mayor) {
+                if (size() <= CacheReportes.this.maxReportes) return false;
+                XDocReportRegistry.getRegistry().unregisterReport(mayor.getValue());
+                return true;
+            }
+        };
+    }
+
+    // La fuente solo se abre si el reporte no está en caché
+    public IXDocReport obtener(String hash, Fuente fuente) throws IOException, XDocReportException {
+        synchronized (reportes) {
+            IXDocReport reporte = reportes.get(hash);
+            if (reporte != null) return reporte;
+        }
+
+        IXDocReport compilado;
+        try (InputStream in = fuente.abrir()) {
+            // Sin registrar todavía: se registra abajo, solo si este es el que queda en el LRU
+            compilado = XDocReportRegistry.getRegistry().loadReport(in, PREFIJO_ID + hash, TemplateEngineKind.Velocity, false);
+        }
+        // AbstractXDocReport preprocesa de forma perezosa y sin sincronizar en el primer process(): se hace aquí,
+        // mientras el reporte es privado de este hilo, y solo se publican reportes ya preprocesados
+        compilado.preprocess();
+
+        synchronized (reportes) {
+            // Si otro hilo lo compiló mientras tanto, se queda el primero
+            IXDocReport previo = reportes.get(hash);
+            if (previo != null) return previo;
+            XDocReportRegistry.getRegistry().registerReport(compilado, true);
+            reportes.put(hash, compilado);
+            return compilado;
+        }
+    }
+}
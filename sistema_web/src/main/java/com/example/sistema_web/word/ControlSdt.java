@@ -0,0 +1,286 @@
+package com.example.sistema_web.word;
+
+import org.apache.xmlbeans.XmlObject;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+// Control de contenido (w:sdt) de word/document.xml con acceso directo a XMLBeans. Trata igual los tres tipos que
+// aparecen en las plantillas: en línea dentro de un párrafo (CTSdtRun), de bloque (CTSdtBlock) y de celda
+// (CTSdtCell). Se obtienen con buscar(cuerpo); cada instancia vive lo que dura la edición de un documento.
+public final class ControlSdt {
+
+    public enum Nivel { RUN, BLOQUE, CELDA }
+
+    private final Nivel nivel;
+    private final String tag;
+    private final CTSdtContentRun contenidoRun;
+    private final CTSdtContentBlock contenidoBloque;
+    private final CTSdtContentCell contenidoCelda;
+    // Control que lo contiene: si se reescribe el de afuera, este deja de existir en el XML
+    private final ControlSdt contenedor;
+    private final int[] ruta;
+    private boolean reescrito;
+
+    private ControlSdt(Nivel nivel, CTSdtPr propiedades, CTSdtContentRun run, CTSdtContentBlock bloque,
+                       CTSdtContentCell celda, ControlSdt contenedor, int[] ruta) {
+        this.nivel = nivel;
+        // Se lee una vez: si el contenedor se reescribe, el XML de este control queda desconectado
+        this.tag = propiedades != null && propiedades.isSetTag() ? propiedades.getTag().getVal() : null;
+        this.contenidoRun = run;
+        this.contenidoBloque = bloque;
+        this.contenidoCelda = celda;
+        this.contenedor = contenedor;
+        this.ruta = ruta;
+    }
+
+    public Nivel getNivel() {
+        return nivel;
+    }
+
+    // null si el control no tiene w:tag
+    public String tag() {
+        return tag;
+    }
+
+    public boolean vigente() {
+        for (ControlSdt c = contenedor; c != null; c = c.contenedor) {
+            if (c.reescrito) return false;
+        }
+        return true;
+    }
+
+    public String texto() {
+        return switch (nivel) {
+            case RUN -> contenidoRun == null ? "" : Ooxml.texto(contenidoRun);
+            case BLOQUE -> contenidoBloque == null ? "" : textoParrafos(contenidoBloque.getPList());
+            case CELDA -> {
+                if (contenidoCelda == null) yield "";
+                List<CTP> parrafos = new ArrayList<>();
+                for (CTTc tc : contenidoCelda.getTcList()) parrafos.addAll(tc.getPList());
+                yield textoParrafos(parrafos);
+            }
+        };
+    }
+
+    // Deja el control con un único run con el valor, conservando el formato del primer run (y del primer párrafo
+    // en los de bloque/celda). El texto de ejemplo de la plantilla y los controles anidados se descartan.
+    public void escribir(String valor) {
+        if (!vigente()) throw new IllegalStateException("El control '" + tag() + "' ya fue reemplazado por su contenedor");
+        switch (nivel) {
+            case RUN -> escribirEnRun(requerido(contenidoRun), valor);
+            case BLOQUE -> {
+                CTSdtContentBlock bloque = requerido(contenidoBloque);
+                for (int i = bloque.sizeOfTblArray() - 1; i >= 0; i--) bloque.removeTbl(i);
+                for (int i = bloque.sizeOfSdtArray() - 1; i >= 0; i--) bloque.removeSdt(i);
+                escribirEnParrafo(unParrafo(bloque.getPList(), bloque::removeP, bloque::addNewP), valor);
+            }
+            case CELDA -> {
+                CTSdtContentCell celda = requerido(contenidoCelda);
+                if (celda.sizeOfTcArray() == 0) throw new IllegalStateException("Control de celda '" + tag() + "' sin w:tc");
+                CTTc tc = celda.getTcArray(0);
+                for (int i = tc.sizeOfTblArray() - 1; i >= 0; i--) tc.removeTbl(i);
+                for (int i = tc.sizeOfSdtArray() - 1; i >= 0; i--) tc.removeSdt(i);
+                escribirEnParrafo(unParrafo(tc.getPList(), tc::removeP, tc::addNewP), valor);
+            }
+        }
+        reescrito = true;
+    }
+
+    // Todos los controles del cuerpo (incluidas tablas anidadas); cada anidado aparece después de su contenedor
+    public static List<ControlSdt> buscar(CTBody cuerpo) {
+        List<ControlSdt> controles = new ArrayList<>();
+        recorrerBloques(cuerpo.getPList(), cuerpo.getTblList(), cuerpo.getSdtList(), new int[0], null, controles);
+        return controles;
+    }
+
+    // Pasos de una ruta desde w:body hasta el control. La ruta es un int[] de pares (paso, índice entre los
+    // hermanos del mismo tipo); entrar al w:sdtContent de un control es implícito.
+    enum Paso { P, TBL, SDT_BLOQUE, TR, TC, SDT_CELDA, SDT_RUN }
+
+    private static final Paso[] PASOS = Paso.values();
+
+    public int[] ruta() {
+        return ruta.clone();
+    }
+
+    private static void recorrerBloques(List<CTP> parrafos, List<CTTbl> tablas, List<CTSdtBlock> bloques,
+                                        int[] base, ControlSdt contenedor, List<ControlSdt> salida) {
+        for (int i = 0; i < parrafos.size(); i++) {
+            int[] rutaP = paso(base, Paso.P, i);
+            List<CTSdtRun> sdts = parrafos.get(i).getSdtList();
+            for (int j = 0; j < sdts.size(); j++) agregarRun(sdts.get(j), paso(rutaP, Paso.SDT_RUN, j), contenedor, salida);
+        }
+        for (int t = 0; t < tablas.size(); t++) {
+            int[] rutaTbl = paso(base, Paso.TBL, t);
+            List<CTRow> filas = tablas.get(t).getTrList();
+            for (int f = 0; f < filas.size(); f++) {
+                int[] rutaTr = paso(rutaTbl, Paso.TR, f);
+                recorrerFila(filas.get(f).getTcList(), filas.get(f).getSdtList(), rutaTr, contenedor, salida);
+            }
+        }
+        for (int b = 0; b < bloques.size(); b++) {
+            CTSdtBlock sdt = bloques.get(b);
+            int[] rutaSdt = paso(base, Paso.SDT_BLOQUE, b);
+            ControlSdt control = new ControlSdt(Nivel.BLOQUE, sdt.getSdtPr(), null, sdt.getSdtContent(), null,
+                    contenedor, rutaSdt);
+            salida.add(control);
+            CTSdtContentBlock c = sdt.getSdtContent();
+            if (c != null) recorrerBloques(c.getPList(), c.getTblList(), c.getSdtList(), rutaSdt, control, salida);
+        }
+    }
+
+    // Vale para w:tr y para el contenido de un control de celda, que tienen los mismos hijos
+    private static void recorrerFila(List<CTTc> celdas, List<CTSdtCell> sdts, int[] base,
+                                     ControlSdt contenedor, List<ControlSdt> salida) {
+        for (int c = 0; c < celdas.size(); c++) {
+            CTTc tc = celdas.get(c);
+            recorrerBloques(tc.getPList(), tc.getTblList(), tc.getSdtList(), paso(base, Paso.TC, c), contenedor, salida);
+        }
+        for (int s = 0; s < sdts.size(); s++) {
+            CTSdtCell sdt = sdts.get(s);
+            int[] rutaSdt = paso(base, Paso.SDT_CELDA, s);
+            ControlSdt control = new ControlSdt(Nivel.CELDA, sdt.getSdtPr(), null, null, sdt.getSdtContent(),
+                    contenedor, rutaSdt);
+            salida.add(control);
+            CTSdtContentCell contenido = sdt.getSdtContent();
+            if (contenido != null) recorrerFila(contenido.getTcList(), contenido.getSdtList(), rutaSdt, control, salida);
+        }
+    }
+
+    private static void agregarRun(CTSdtRun sdt, int[] ruta, ControlSdt contenedor, List<ControlSdt> salida) {
+        ControlSdt control = new ControlSdt(Nivel.RUN, sdt.getSdtPr(), sdt.getSdtContent(), null, null, contenedor, ruta);
+        salida.add(control);
+        if (sdt.getSdtContent() != null) {
+            List<CTSdtRun> anidados = sdt.getSdtContent().getSdtList();
+            for (int i = 0; i < anidados.size(); i++) agregarRun(anidados.get(i), paso(ruta, Paso.SDT_RUN, i), control, salida);
+        }
+    }
+
+    private static int[] paso(int[] base, Paso paso, int indice) {
+        int[] ruta = Arrays.copyOf(base, base.length + 2);
+        ruta[base.length] = paso.ordinal();
+        ruta[base.length + 1] = indice;
+        return ruta;
+    }
+
+    // Va directo al control de esa ruta sin recorrer el resto del documento. null si la ruta ya no existe o no
+    // termina en un control (índice viejo); el contenedor se pasa para que vigente() siga funcionando.
+    public static ControlSdt ubicar(CTBody cuerpo, int[] ruta, ControlSdt contenedor) {
+        XmlObject actual = cuerpo;
+        for (int i = 0; i + 1 < ruta.length && actual != null; i += 2) {
+            if (ruta[i] < 0 || ruta[i] >= PASOS.length) return null;
+            actual = bajar(actual, PASOS[ruta[i]], ruta[i + 1]);
+        }
+        if (actual instanceof CTSdtRun sdt) {
+            return new ControlSdt(Nivel.RUN, sdt.getSdtPr(), sdt.getSdtContent(), null, null, contenedor, ruta.clone());
+        }
+        if (actual instanceof CTSdtBlock sdt) {
+            return new ControlSdt(Nivel.BLOQUE, sdt.getSdtPr(), null, sdt.getSdtContent(), null, contenedor, ruta.clone());
+        }
+        if (actual instanceof CTSdtCell sdt) {
+            return new ControlSdt(Nivel.CELDA, sdt.getSdtPr(), null, null, sdt.getSdtContent(), contenedor, ruta.clone());
+        }
+        return null;
+    }
+
+    private static XmlObject bajar(XmlObject nodo, Paso paso, int i) {
+        // Dentro de un control se sigue por su w:sdtContent
+        if (nodo instanceof CTSdtBlock sdt) nodo = sdt.getSdtContent();
+        else if (nodo instanceof CTSdtCell sdt) nodo = sdt.getSdtContent();
+        else if (nodo instanceof CTSdtRun sdt) nodo = sdt.getSdtContent();
+        if (nodo == null || i < 0) return null;
+
+        return switch (paso) {
+            case P -> {
+                if (nodo instanceof CTBody b) yield i < b.sizeOfPArray() ? b.getPArray(i) : null;
+                if (nodo instanceof CTSdtContentBlock b) yield i < b.sizeOfPArray() ? b.getPArray(i) : null;
+                if (nodo instanceof CTTc tc) yield i < tc.sizeOfPArray() ? tc.getPArray(i) : null;
+                yield null;
+            }
+            case TBL -> {
+                if (nodo instanceof CTBody b) yield i < b.sizeOfTblArray() ? b.getTblArray(i) : null;
+                if (nodo instanceof CTSdtContentBlock b) yield i < b.sizeOfTblArray() ? b.getTblArray(i) : null;
+                if (nodo instanceof CTTc tc) yield i < tc.sizeOfTblArray() ? tc.getTblArray(i) : null;
+                yield null;
+            }
+            case SDT_BLOQUE -> {
+                if (nodo instanceof CTBody b) yield i < b.sizeOfSdtArray() ? b.getSdtArray(i) : null;
+                if (nodo instanceof CTSdtContentBlock b) yield i < b.sizeOfSdtArray() ? b.getSdtArray(i) : null;
+                if (nodo instanceof CTTc tc) yield i < tc.sizeOfSdtArray() ? tc.getSdtArray(i) : null;
+                yield null;
+            }
+            case TR -> nodo instanceof CTTbl t && i < t.sizeOfTrArray() ? t.getTrArray(i) : null;
+            case TC -> {
+                if (nodo instanceof CTRow r) yield i < r.sizeOfTcArray() ? r.getTcArray(i) : null;
+                if (nodo instanceof CTSdtContentCell c) yield i < c.sizeOfTcArray() ? c.getTcArray(i) : null;
+                yield null;
+            }
+            case SDT_CELDA -> {
+                if (nodo instanceof CTRow r) yield i < r.sizeOfSdtArray() ? r.getSdtArray(i) : null;
+                if (nodo instanceof CTSdtContentCell c) yield i < c.sizeOfSdtArray() ? c.getSdtArray(i) : null;
+                yield null;
+            }
+            case SDT_RUN -> {
+                if (nodo instanceof CTP p) yield i < p.sizeOfSdtArray() ? p.getSdtArray(i) : null;
+                if (nodo instanceof CTSdtContentRun c) yield i < c.sizeOfSdtArray() ? c.getSdtArray(i) : null;
+                yield null;
+            }
+        };
+    }
+
+    private static String textoParrafos(List<CTP> parrafos) {
+        StringBuilder sb = new StringBuilder();
+        for (CTP p : parrafos) {
+            if (!sb.isEmpty()) sb.append('\n');
+            sb.append(Ooxml.texto(p));
+        }
+        return sb.toString();
+    }
+
+    private static void escribirEnRun(CTSdtContentRun contenido, String valor) {
+        CTRPr formato = primerFormato(contenido.getRList());
+        for (int i = contenido.sizeOfRArray() - 1; i >= 0; i--) contenido.removeR(i);
+        for (int i = contenido.sizeOfSdtArray() - 1; i >= 0; i--) contenido.removeSdt(i);
+        agregarRun(contenido.addNewR(), formato, valor);
+    }
+
+    private static void escribirEnParrafo(CTP parrafo, String valor) {
+        List<CTR> runs = new ArrayList<>(Ooxml.runs(parrafo));
+        for (CTSdtRun sdt : parrafo.getSdtList()) {
+            if (sdt.getSdtContent() != null) runs.addAll(sdt.getSdtContent().getRList());
+        }
+        CTRPr formato = primerFormato(runs);
+        Ooxml.vaciar(parrafo);
+        for (int i = parrafo.sizeOfSdtArray() - 1; i >= 0; i--) parrafo.removeSdt(i);
+        agregarRun(parrafo.addNewR(), formato, valor);
+    }
+
+    // Conserva el primer párrafo (con su w:pPr) y elimina el resto
+    private static CTP unParrafo(List<CTP> parrafos, IntConsumer quitar, Supplier<CTP> nuevo) {
+        if (parrafos.isEmpty()) return nuevo.get();
+        for (int i = parrafos.size() - 1; i >= 1; i--) quitar.accept(i);
+        return parrafos.get(0);
+    }
+
+    private static CTRPr primerFormato(List<CTR> runs) {
+        for (CTR run : runs) {
+            if (run.isSetRPr()) return (CTRPr) run.getRPr().copy();
+        }
+        return null;
+    }
+
+    private static void agregarRun(CTR run, CTRPr formato, String valor) {
+        if (formato != null) run.setRPr(formato);
+        Ooxml.fijarTexto(run, valor);
+    }
+
+    private <T> T requerido(T contenido) {
+        if (contenido == null) throw new IllegalStateException("Control '" + tag() + "' sin w:sdtContent");
+        return contenido;
+    }
+}
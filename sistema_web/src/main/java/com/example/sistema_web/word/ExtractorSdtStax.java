@@ -0,0 +1,144 @@
+package com.example.sistema_web.word;
+
+import org.springframework.stereotype.Component;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+// Lee los controles de contenido (w:sdt) de un .docx recorriendo word/document.xml con StAX, sin armar el DOM
+// de POI. Devuelve tag → texto (recortado) con el mismo alcance y orden que la lectura con POI: controles en línea
+// de los párrafos del cuerpo y luego los de las celdas de tablas de primer nivel (si un tag se repite, gana el último).
+@Component
+public class ExtractorSdtStax {
+
+    static final String NS_W = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    static final String DOCUMENT_XML = "word/document.xml";
+
+    private final XMLInputFactory factory;
+
+    public ExtractorSdtStax() {
+        factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+    }
+
+    public Map<String, String> extraer(InputStream docx) throws IOException {
+        ZipInputStream zip = new ZipInputStream(docx);
+        ZipEntry entrada;
+        while ((entrada = zip.getNextEntry()) != null) {
+            if (DOCUMENT_XML.equals(entrada.getName())) {
+                try {
+                    return leerDocumento(zip);
+                } catch (XMLStreamException e) {
+                    throw new IOException("document.xml mal formado: " + e.getMessage(), e);
+                }
+            }
+        }
+        throw new IOException("El archivo no contiene " + DOCUMENT_XML);
+    }
+
+    private Map<String, String> leerDocumento(InputStream xml) throws XMLStreamException {
+        Map<String, String> cuerpo = new LinkedHashMap<>();
+        Map<String, String> tablas = new LinkedHashMap<>();
+        XMLStreamReader reader = factory.createXMLStreamReader(xml);
+
+        // Pila de controles abiertos: el texto de un control anidado también cuenta para el que lo contiene
+        Deque<ControlAbierto> abiertos = new ArrayDeque<>();
+        // Elementos abiertos (nombre local, "" si no es de WordprocessingML) para saber quién es el padre
+        Deque<String> ruta = new ArrayDeque<>();
+        boolean enTexto = false;
+
+        try {
+            while (reader.hasNext()) {
+                int evento = reader.next();
+                if (evento == XMLStreamConstants.START_ELEMENT) {
+                    String padre = ruta.peek();
+                    String nombre = NS_W.equals(reader.getNamespaceURI()) ? reader.getLocalName() : "";
+                    ruta.push(nombre);
+                    switch (nombre) {
+                        case "sdt" -> abiertos.push(new ControlAbierto(ubicar(ruta)));
+                        case "tag" -> {
+                            ControlAbierto actual = abiertos.peek();
+                            if (actual != null && actual.tag.isEmpty() && "sdtPr".equals(padre)) {
+                                String val = reader.getAttributeValue(NS_W, "val");
+                                if (val != null) actual.tag = val;
+                            }
+                        }
+                        case "sdtContent" -> {
+                            ControlAbierto actual = abiertos.peek();
+                            if (actual != null) actual.enContenido = true;
+                        }
+                        case "t" -> enTexto = true;
+                        case "tab" -> {
+                            if ("r".equals(padre)) agregar(abiertos, "\t");
+                        }
+                        case "br", "cr" -> {
+                            if ("r".equals(padre)) agregar(abiertos, "\n");
+                        }
+                        default -> { }
+                    }
+                } else if (evento == XMLStreamConstants.CHARACTERS || evento == XMLStreamConstants.CDATA) {
+                    if (enTexto) agregar(abiertos, reader.getText());
+                } else if (evento == XMLStreamConstants.END_ELEMENT) {
+                    String nombre = ruta.pop();
+                    if ("t".equals(nombre)) {
+                        enTexto = false;
+                    } else if ("sdt".equals(nombre) && !abiertos.isEmpty()) {
+                        ControlAbierto cerrado = abiertos.pop();
+                        String texto = cerrado.texto.toString().trim();
+                        if (texto.isEmpty()) continue;
+                        if (cerrado.ubicacion == Ubicacion.CUERPO) cuerpo.put(cerrado.tag, texto);
+                        else if (cerrado.ubicacion == Ubicacion.TABLA) tablas.put(cerrado.tag, texto);
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        cuerpo.putAll(tablas);
+        return cuerpo;
+    }
+
+    // ruta = sdt, p, ... hasta document (el tope de la pila es el elemento recién abierto)
+    private static Ubicacion ubicar(Deque<String> ruta) {
+        String[] r = ruta.toArray(String[]::new);
+        if (r.length < 4 || !"p".equals(r[1])) return Ubicacion.OTRA;
+        if ("body".equals(r[2])) return Ubicacion.CUERPO;
+        if (r.length >= 7 && "tc".equals(r[2]) && "tr".equals(r[3]) && "tbl".equals(r[4]) && "body".equals(r[5])) {
+            return Ubicacion.TABLA;
+        }
+        return Ubicacion.OTRA;
+    }
+
+    private enum Ubicacion { CUERPO, TABLA, OTRA }
+
+    private static void agregar(Deque<ControlAbierto> abiertos, String texto) {
+        for (ControlAbierto control : abiertos) {
+            if (control.enContenido) control.texto.append(texto);
+        }
+    }
+
+    private static final class ControlAbierto {
+        private final Ubicacion ubicacion;
+        private final StringBuilder texto = new StringBuilder();
+        // Igual que XWPFSDT.getTag(): "" cuando el control no tiene w:tag
+        private String tag = "";
+        private boolean enContenido;
+
+        private ControlAbierto(Ubicacion ubicacion) {
+            this.ubicacion = ubicacion;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.sistema_web.word;
+
+import com.example.sistema_web.dto.ResultadoOficioMasivoDTO;
+import com.example.sistema_web.model.ArchivoAdjunto;
+import com.example.sistema_web.model.Documento;
+import com.example.sistema_web.plantilla.PlantillaCargada;
+import com.example.sistema_web.repository.DocumentoRepository;
+import com.example.sistema_web.storage.BlobStore;
+import fr.opensagres.xdocreport.document.IXDocReport;
+import fr.opensagres.xdocreport.template.IContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayOutputStream;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Generación masiva de oficios (uno por documento) común a dosaje y toxicología. El render corre en RenderParalelo
+// y solo produce bytes; los blobs se escriben después de que las filas quedaron guardadas, así un saveAll fallido
+// no deja archivos huérfanos.
+@Component
+public class GeneradorOficios {
+
+    // Lo propio de cada tipo de oficio: armar la entidad para un documento, los datos que recibe el Word y dónde
+    // queda la huella de sincronización (datos ya calculados, archivoHash ya asignado)
+    public record Fabrica<E extends ArchivoAdjunto>(Function<Documento, E> nuevo,
+                                                    Function<E, Map<String, String>> datos,
+                                                    BiConsumer<E, Map<String, String>> sincronizado) {
+    }
+
+    private record Generado<E>(Long documentoId, E oficio, byte[] contenido) {
+    }
+
+    private final DocumentoRepository documentoRepository;
+    private final CacheReportes cacheReportes;
+    private final RenderParalelo renderParalelo;
+    private final BlobStore blobStore;
+    private final int maxDocumentos;
+
+    public GeneradorOficios(DocumentoRepository documentoRepository,
+                            CacheReportes cacheReportes,
+                            RenderParalelo renderParalelo,
+                            BlobStore blobStore,
+                            @Value("${oficios.masivo.max-documentos:200}") int maxDocumentos) {
+        this.documentoRepository = documentoRepository;
+        this.cacheReportes = cacheReportes;
+        this.renderParalelo = renderParalelo;
+        this.blobStore = blobStore;
+        this.maxDocumentos = maxDocumentos;
+    }
+
+    // Un resultado por documento pedido, en el mismo orden
+    public <E extends ArchivoAdjunto> List<ResultadoOficioMasivoDTO> generarMasivo(String etiqueta,
+                                                                                   List<Long> documentoIds,
+                                                                                   PlantillaCargada plantilla,
+                                                                                   JpaRepository<E, Long> repository,
+                                                                                   Fabrica<E> fabrica) {
+        List<Long> ids = documentoIds == null ? List.of()
+                : documentoIds.stream().filter(Objects::nonNull).distinct().toList();
+        if (ids.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No se enviaron documentos");
+        }
+        if (ids.size() > maxDocumentos) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Máximo " + maxDocumentos + " documentos por generación masiva");
+        }
+
+        Map<Long, Documento> documentos = documentoRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Documento::getId, Function.identity()));
+        IXDocReport report;
+        try {
+            report = cacheReportes.obtener(plantilla.getHash(), plantilla::abrir);
+        } catch (Exception e) {
+            throw new RuntimeException("No se pudo cargar la plantilla: " + e.getMessage(), e);
+        }
+
+        // 1. Render (CPU) en el pool, sin transacción abierta ni escrituras a disco
+        List<Documento> aGenerar = ids.stream().map(documentos::get).filter(Objects::nonNull).toList();
+        List<RenderParalelo.Resultado<Generado<E>>> renders = renderParalelo.procesar(etiqueta, aGenerar,
+                doc -> generar(doc, report, fabrica));
+
+        Map<Long, String> errores = new HashMap<>();
+        List<Generado<E>> listos = new ArrayList<>();
+        for (int i = 0; i < aGenerar.size(); i++) {
+            RenderParalelo.Resultado<Generado<E>> r = renders.get(i);
+            if (r.ok()) listos.add(r.valor());
+            else errores.put(aGenerar.get(i).getId(), r.error());
+        }
+
+        // 2. Todas las filas en una sola transacción; si falla, todavía no se escribió ningún archivo
+        Map<Long, Long> oficioPorDocumento = new HashMap<>();
+        if (!listos.isEmpty()) {
+            try {
+                List<E> guardados = repository.saveAll(listos.stream().map(Generado::oficio).toList());
+                // 3. Archivos de las filas ya guardadas. Una fila cuyo archivo no se pudo escribir se quita, para no
+                // dejar un oficio apuntando a un blob que no existe
+                List<E> sinArchivo = new ArrayList<>();
+                for (int i = 0; i < guardados.size(); i++) {
+                    Generado<E> g = listos.get(i);
+                    E guardado = guardados.get(i);
+                    try {
+                        blobStore.guardar(g.contenido());
+                        oficioPorDocumento.put(g.documentoId(), guardado.getId());
+                    } catch (RuntimeException e) {
+                        sinArchivo.add(guardado);
+                        errores.put(g.documentoId(), "No se pudo guardar el archivo: " + e.getMessage());
+                    }
+                }
+                if (!sinArchivo.isEmpty()) repository.deleteAll(sinArchivo);
+            } catch (RuntimeException e) {
+                System.err.println("❌ No se pudieron guardar los oficios masivos: " + e.getMessage());
+                listos.forEach(g -> {
+                    if (!oficioPorDocumento.containsKey(g.documentoId())) {
+                        errores.putIfAbsent(g.documentoId(), "No se pudo guardar: " + e.getMessage());
+                    }
+                });
+            }
+        }
+
+        List<ResultadoOficioMasivoDTO> resultados = new ArrayList<>(ids.size());
+        for (Long documentoId : ids) {
+            if (!documentos.containsKey(documentoId)) {
+                resultados.add(new ResultadoOficioMasivoDTO(documentoId, null, "Documento no encontrado"));
+            } else {
+                resultados.add(new ResultadoOficioMasivoDTO(documentoId, oficioPorDocumento.get(documentoId),
+                        errores.get(documentoId)));
+            }
+        }
+        return resultados;
+    }
+
+    private <E extends ArchivoAdjunto> Generado<E> generar(Documento doc, IXDocReport report, Fabrica<E> fabrica) {
+        E oficio = fabrica.nuevo().apply(doc);
+        Map<String, String> datos = fabrica.datos().apply(oficio);
+        byte[] contenido;
+        try {
+            contenido = renderizar(report, datos);
+        } catch (Exception e) {
+            throw new RuntimeException("Error generando el oficio: " + e.getMessage(), e);
+        }
+        // El hash se conoce sin escribir el blob (es el SHA-256 del contenido)
+        oficio.setArchivoHash(BlobStore.sha256(contenido));
+        // Ya sale sincronizado: el primer "sincronizar" sobre este oficio no tiene nada que hacer
+        fabrica.sincronizado().accept(oficio, datos);
+        return new Generado<>(doc.getId(), oficio, contenido);
+    }
+
+    public static byte[] renderizar(IXDocReport report, Map<String, String> datos) throws Exception {
+        IContext context = report.createContext();
+        datos.forEach(context::put);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        report.process(context, out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.sistema_web.word;
+
+import com.example.sistema_web.plantilla.Plantilla;
+import com.example.sistema_web.plantilla.PlantillaCargada;
+import com.example.sistema_web.plantilla.TemplateRegistry;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTBody;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Índice tag → ubicación de cada control de contenido, por hash del .docx. Como el contenido se direcciona por
+// hash, un archivo modificado trae un hash nuevo y nunca usa un índice viejo: no hace falta invalidar a mano.
+// Las plantillas se indexan al arrancar; los documentos guardados, la primera vez que se editan, y después de
+// cada edición el índice pasa al hash del archivo nuevo (trasladar).
+@Component
+public class IndiceTags {
+
+    private final TemplateRegistry templateRegistry;
+    private final ParcheDocx parcheDocx;
+    private final int maxDocumentos;
+
+    // hash → (TAG en mayúsculas → rutas de los controles con ese tag), LRU por acceso
+    private final Map<String, Map<String, List<int[]>>> indices;
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+
+    public IndiceTags(TemplateRegistry templateRegistry,
+                      ParcheDocx parcheDocx,
+                      @Value("${word.indice-tags.max-documentos:500}") int maxDocumentos) {
+        this.templateRegistry = templateRegistry;
+        this.parcheDocx = parcheDocx;
+        this.maxDocumentos = Math.max(1, maxDocumentos);
+        this.indices = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<String, List<int[]>>> mayor) {
+                return size() > IndiceTags.this.maxDocumentos;
+            }
+        };
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    void indexarPlantillas() {
+        for (Plantilla plantilla : Plantilla.values()) {
+            PlantillaCargada cargada = templateRegistry.obtener(plantilla);
+            try {
+                CTBody cuerpo = parcheDocx.leerDocumento(cargada.copia()).getBody();
+                Map<String, List<int[]>> indice = indexar(ControlSdt.buscar(cuerpo));
+                guardar(cargada.getHash(), indice);
+                if (!indice.isEmpty()) {
+                    System.out.println("🗂️ Índice de tags de " + plantilla.getArchivo() + ": " + indice.keySet());
+                }
+            } catch (IOException e) {
+                System.err.println("⚠️ No se pudo indexar la plantilla " + plantilla.getArchivo() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Controles con alguno de esos tags (en mayúsculas) del cuerpo ya parseado del archivo con ese hash. Con
+    // índice se va directo a cada nodo; sin índice (o si no coincide con el XML) se recorre todo y se indexa.
+    public List<ControlSdt> controles(String hash, CTBody cuerpo, Set<String> tags) {
+        Map<String, List<int[]>> indice = hash == null ? null : buscarIndice(hash);
+        if (indice != null) {
+            List<ControlSdt> ubicados = ubicar(cuerpo, indice, tags);
+            if (ubicados != null) {
+                aciertos.incrementAndGet();
+                return ubicados;
+            }
+            System.err.println("⚠️ Índice de tags no coincide con el documento " + hash.substring(0, 12) + ", se reconstruye");
+        }
+
+        fallos.incrementAndGet();
+        List<ControlSdt> todos = ControlSdt.buscar(cuerpo);
+        if (hash != null) guardar(hash, indexar(todos));
+
+        List<ControlSdt> pedidos = new ArrayList<>();
+        for (ControlSdt control : todos) {
+            if (control.tag() != null && tags.contains(control.tag().toUpperCase())) pedidos.add(control);
+        }
+        return pedidos;
+    }
+
+    // Una edición solo cambia el contenido de los controles, no dónde están, así que el índice del archivo anterior
+    // sirve para el editado. Si algo no coincide (p. ej. un contenedor reescrito perdió controles anidados),
+    // controles() lo detecta al ubicar y vuelve a indexar.
+    public void trasladar(String hashAnterior, String hashNuevo) {
+        if (hashAnterior == null || hashNuevo == null || hashAnterior.equals(hashNuevo)) return;
+        synchronized (indices) {
+            Map<String, List<int[]>> indice = indices.get(hashAnterior);
+            if (indice != null) indices.put(hashNuevo, indice);
+        }
+    }
+
+    // Búsquedas resueltas con el índice / que tuvieron que recorrer el documento entero
+    public long aciertos() {
+        return aciertos.get();
+    }
+
+    public long fallos() {
+        return fallos.get();
+    }
+
+    private List<ControlSdt> ubicar(CTBody cuerpo, Map<String, List<int[]>> indice, Set<String> tags) {
+        List<int[]> rutas = new ArrayList<>();
+        for (String tag : tags) rutas.addAll(indice.getOrDefault(tag, List.of()));
+        // Orden de recorrido: un contenedor queda antes que sus anidados (su ruta es prefijo de la de ellos)
+        rutas.sort(Arrays::compare);
+
+        List<ControlSdt> ubicados = new ArrayList<>(rutas.size());
+        for (int[] ruta : rutas) {
+            ControlSdt contenedor = null;
+            for (ControlSdt previo : ubicados) {
+                if (esPrefijo(previo.ruta(), ruta)) contenedor = previo;
+            }
+            ControlSdt control = ControlSdt.ubicar(cuerpo, ruta, contenedor);
+            if (control == null || control.tag() == null || !tags.contains(control.tag().toUpperCase())) {
+                return null;
+            }
+            ubicados.add(control);
+        }
+        return ubicados;
+    }
+
+    private static boolean esPrefijo(int[] corta, int[] larga) {
+        return corta.length < larga.length && Arrays.equals(corta, 0, corta.length, larga, 0, corta.length);
+    }
+
+    private static Map<String, List<int[]>> indexar(List<ControlSdt> controles) {
+        Map<String, List<int[]>> indice = new HashMap<>();
+        for (ControlSdt control : controles) {
+            if (control.tag() == null || control.tag().isBlank()) continue;
+            indice.computeIfAbsent(control.tag().toUpperCase(), k -> new ArrayList<>()).add(control.ruta());
+        }
+        return indice;
+    }
+
+    private Map<String, List<int[]>> buscarIndice(String hash) {
+        synchronized (indices) {
+            return indices.get(hash);
+        }
+    }
+
+    private void guardar(String hash, Map<String, List<int[]>> indice) {
+        synchronized (indices) {
+            indices.put(hash, indice);
+        }
+    }
+}
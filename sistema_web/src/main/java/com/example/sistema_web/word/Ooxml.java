@@ -0,0 +1,111 @@
+package com.example.sistema_web.word;
+
+import org.apache.xmlbeans.impl.xb.xmlschema.SpaceAttribute;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.*;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+// Ayudas sobre el XML de WordprocessingML (CTP, CTR, CTTbl) para editar word/document.xml sin el modelo XWPF.
+// Reproducen lo justo de XWPFParagraph/XWPFRun que usan los servicios: runs de texto, texto visible y formato.
+public final class Ooxml {
+
+    private Ooxml() {
+    }
+
+    // Mismo alcance que document.getParagraphs() + celdas de document.getTables() en POI
+    public static List<CTP> parrafosEditables(CTBody cuerpo) {
+        List<CTP> parrafos = new ArrayList<>(cuerpo.getPList());
+        for (CTTbl tabla : cuerpo.getTblList()) {
+            for (CTRow fila : tabla.getTrList()) {
+                for (CTTc celda : fila.getTcList()) {
+                    parrafos.addAll(celda.getPList());
+                }
+            }
+        }
+        return parrafos;
+    }
+
+    // Equivalente a XWPFParagraph.getRuns(): runs directos, de hipervínculos y de campos simples
+    public static List<CTR> runs(CTP parrafo) {
+        List<CTR> runs = new ArrayList<>(parrafo.getRList());
+        for (CTHyperlink link : parrafo.getHyperlinkList()) runs.addAll(link.getRList());
+        for (CTSimpleField campo : parrafo.getFldSimpleList()) runs.addAll(campo.getRList());
+        return runs;
+    }
+
+    public static String texto(CTP parrafo) {
+        StringBuilder sb = new StringBuilder();
+        for (CTR run : runs(parrafo)) agregarTexto(sb, run);
+        for (CTSdtRun sdt : parrafo.getSdtList()) {
+            if (sdt.getSdtContent() != null) sb.append(texto(sdt.getSdtContent()));
+        }
+        return sb.toString();
+    }
+
+    public static String texto(CTSdtContentRun contenido) {
+        StringBuilder sb = new StringBuilder();
+        for (CTR run : contenido.getRList()) agregarTexto(sb, run);
+        return sb.toString();
+    }
+
+    public static String texto(CTTc celda) {
+        StringBuilder sb = new StringBuilder();
+        for (CTP parrafo : celda.getPList()) {
+            if (!sb.isEmpty()) sb.append('\n');
+            sb.append(texto(parrafo));
+        }
+        return sb.toString();
+    }
+
+    private static void agregarTexto(StringBuilder sb, CTR run) {
+        for (CTText t : run.getTList()) sb.append(t.getStringValue());
+    }
+
+    // Como XWPFRun.getText(0): el primer w:t del run, o null si no tiene
+    public static String primerTexto(CTR run) {
+        return run.sizeOfTArray() == 0 ? null : run.getTArray(0).getStringValue();
+    }
+
+    public static void fijarTexto(CTR run, String valor) {
+        CTText t = run.sizeOfTArray() == 0 ? run.addNewT() : run.getTArray(0);
+        t.setStringValue(valor);
+        conservarEspacios(t, valor);
+    }
+
+    public static CTR nuevoRun(CTP parrafo, String valor) {
+        CTR run = parrafo.addNewR();
+        fijarTexto(run, valor);
+        return run;
+    }
+
+    // Quita todo el texto del párrafo (runs, hipervínculos y campos simples), igual que removeRun() sobre getRuns()
+    public static void vaciar(CTP parrafo) {
+        for (int i = parrafo.sizeOfRArray() - 1; i >= 0; i--) parrafo.removeR(i);
+        for (int i = parrafo.sizeOfHyperlinkArray() - 1; i >= 0; i--) parrafo.removeHyperlink(i);
+        for (int i = parrafo.sizeOfFldSimpleArray() - 1; i >= 0; i--) parrafo.removeFldSimple(i);
+    }
+
+    // Como XWPFRun.setFontFamily / setFontSize / setBold
+    public static void formato(CTR run, String fuente, int puntos, boolean negrita) {
+        CTRPr pr = run.isSetRPr() ? run.getRPr() : run.addNewRPr();
+        CTFonts fonts = pr.sizeOfRFontsArray() == 0 ? pr.addNewRFonts() : pr.getRFontsArray(0);
+        fonts.setAscii(fuente);
+        fonts.setHAnsi(fuente);
+        fonts.setCs(fuente);
+        fonts.setEastAsia(fuente);
+
+        BigInteger mediosPuntos = BigInteger.valueOf(puntos * 2L);
+        (pr.sizeOfSzArray() == 0 ? pr.addNewSz() : pr.getSzArray(0)).setVal(mediosPuntos);
+        (pr.sizeOfSzCsArray() == 0 ? pr.addNewSzCs() : pr.getSzCsArray(0)).setVal(mediosPuntos);
+        if (negrita && pr.sizeOfBArray() == 0) pr.addNewB();
+    }
+
+    private static void conservarEspacios(CTText t, String valor) {
+        if (!valor.isEmpty() && (Character.isWhitespace(valor.charAt(0))
+                || Character.isWhitespace(valor.charAt(valor.length() - 1)))) {
+            t.setSpace(SpaceAttribute.Space.PRESERVE);
+        }
+    }
+}
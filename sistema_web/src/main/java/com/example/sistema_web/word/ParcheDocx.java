@@ -0,0 +1,117 @@
+package com.example.sistema_web.word;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipExtraField;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import org.apache.poi.ooxml.POIXMLTypeLoader;
+import org.apache.xmlbeans.XmlException;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTDocument1;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.DocumentDocument;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.zip.ZipEntry;
+
+// Edita un .docx reescribiendo solo las partes XML que cambian (normalmente word/document.xml). Las demás entradas
+// del ZIP —imágenes, estilos, fuentes— se copian con sus bytes comprimidos tal cual, sin pasar por POI, que al
+// guardar descomprime y vuelve a comprimir el paquete entero.
+@Component
+public class ParcheDocx {
+
+    @FunctionalInterface
+    public interface EdicionDocumento {
+        // true si hubo cambios y hay que reescribir word/document.xml
+        boolean aplicar(CTDocument1 documento) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface EdicionParte {
+        // Nuevo contenido de la parte, o null para dejarla como estaba
+        byte[] aplicar(String nombre, InputStream contenido) throws IOException;
+    }
+
+    // Devuelve el .docx editado, o null si la edición no cambió nada (no hace falta guardar)
+    public byte[] editarDocumento(byte[] docx, EdicionDocumento edicion) throws IOException {
+        return editarPartes(docx, ExtractorSdtStax.DOCUMENT_XML::equals, (nombre, contenido) -> {
+            DocumentDocument xml = parsear(nombre, contenido);
+            if (!edicion.aplicar(xml.getDocument())) return null;
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            xml.save(out, POIXMLTypeLoader.DEFAULT_XML_OPTIONS);
+            return out.toByteArray();
+        });
+    }
+
+    // Solo lectura: word/document.xml parseado, sin tocar el resto del paquete
+    public CTDocument1 leerDocumento(byte[] docx) throws IOException {
+        try (ZipFile zip = new ZipFile(new SeekableInMemoryByteChannel(docx))) {
+            ZipArchiveEntry entrada = zip.getEntry(ExtractorSdtStax.DOCUMENT_XML);
+            if (entrada == null) throw new IOException("El archivo no contiene " + ExtractorSdtStax.DOCUMENT_XML);
+            try (InputStream in = zip.getInputStream(entrada)) {
+                return parsear(entrada.getName(), in).getDocument();
+            }
+        }
+    }
+
+    public byte[] editarPartes(byte[] docx, Predicate<String> partes, EdicionParte edicion) throws IOException {
+        try (ZipFile zip = new ZipFile(new SeekableInMemoryByteChannel(docx))) {
+            List<ZipArchiveEntry> entradas = Collections.list(zip.getEntriesInPhysicalOrder());
+
+            // 1. Solo se descomprimen las partes que se van a editar
+            Map<String, byte[]> reemplazos = new HashMap<>();
+            for (ZipArchiveEntry entrada : entradas) {
+                if (entrada.isDirectory() || !partes.test(entrada.getName())) continue;
+                try (InputStream in = zip.getInputStream(entrada)) {
+                    byte[] nuevo = edicion.aplicar(entrada.getName(), in);
+                    if (nuevo != null) reemplazos.put(entrada.getName(), nuevo);
+                }
+            }
+            if (reemplazos.isEmpty()) return null;
+
+            // 2. Se arma el paquete en el mismo orden; lo que no cambió se copia comprimido
+            ByteArrayOutputStream salida = new ByteArrayOutputStream(docx.length + 8192);
+            try (ZipArchiveOutputStream zos = new ZipArchiveOutputStream(salida)) {
+                for (ZipArchiveEntry entrada : entradas) {
+                    byte[] nuevo = reemplazos.get(entrada.getName());
+                    if (nuevo == null) {
+                        try (InputStream crudo = zip.getRawInputStream(entrada)) {
+                            zos.addRawArchiveEntry(sinCamposExtra(new ZipArchiveEntry(entrada)), crudo);
+                        }
+                        continue;
+                    }
+                    ZipArchiveEntry reescrita = new ZipArchiveEntry(entrada.getName());
+                    reescrita.setMethod(ZipEntry.DEFLATED);
+                    // Misma fecha que la original: la misma edición produce los mismos bytes (y el mismo hash)
+                    reescrita.setTime(entrada.getTime());
+                    zos.putArchiveEntry(sinCamposExtra(reescrita));
+                    zos.write(nuevo);
+                    zos.closeArchiveEntry();
+                }
+            }
+            return salida.toByteArray();
+        }
+    }
+
+    private static DocumentDocument parsear(String nombre, InputStream contenido) throws IOException {
+        try {
+            return DocumentDocument.Factory.parse(contenido, POIXMLTypeLoader.DEFAULT_XML_OPTIONS);
+        } catch (XmlException e) {
+            throw new IOException(nombre + " mal formado: " + e.getMessage(), e);
+        }
+    }
+
+    // commons-compress agrega marcas de tiempo extendidas a cada entrada; Word no las usa y solo suman bytes
+    private static ZipArchiveEntry sinCamposExtra(ZipArchiveEntry entrada) {
+        entrada.setExtraFields(new ZipExtraField[0]);
+        return entrada;
+    }
+}
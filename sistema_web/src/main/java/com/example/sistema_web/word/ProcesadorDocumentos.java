@@ -0,0 +1,104 @@
+package com.example.sistema_web.word;
+
+import com.example.sistema_web.exception.ProcesamientoSaturadoException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Limita cuántos documentos Word (POI / XDocReport) se procesan a la vez. Cada edición arma el XML entero en
+// memoria, así que el cupo sale de un presupuesto de heap dividido por lo que cuesta un documento. Lo que excede
+// el cupo espera en una cola acotada; si la cola está llena o la espera se vence, se rechaza con 503.
+@Component
+public class ProcesadorDocumentos {
+
+    private final int concurrencia;
+    private final int maxEnCola;
+    private final long esperaMs;
+    private final Semaphore cupos;
+
+    private final AtomicInteger enCola = new AtomicInteger();
+    private final AtomicLong procesados = new AtomicLong();
+    private final AtomicLong rechazados = new AtomicLong();
+
+    public ProcesadorDocumentos(@Value("${word.procesamiento.presupuesto-mb:0}") long presupuestoMb,
+                                @Value("${word.procesamiento.costo-mb-por-documento:64}") long costoMb,
+                                @Value("${word.procesamiento.max-concurrencia:0}") int maxConcurrencia,
+                                @Value("${word.procesamiento.max-en-cola:20}") int maxEnCola,
+                                @Value("${word.procesamiento.espera-ms:10000}") long esperaMs) {
+        // Sin presupuesto explícito se toma un cuarto del heap máximo de la JVM
+        long presupuesto = presupuestoMb > 0 ? presupuestoMb : Runtime.getRuntime().maxMemory() / (4L * 1024 * 1024);
+        int porMemoria = (int) Math.max(1, presupuesto / Math.max(1, costoMb));
+        int tope = maxConcurrencia > 0 ? maxConcurrencia : Runtime.getRuntime().availableProcessors();
+
+        this.concurrencia = Math.min(porMemoria, tope);
+        this.maxEnCola = Math.max(0, maxEnCola);
+        this.esperaMs = Math.max(0, esperaMs);
+        this.cupos = new Semaphore(concurrencia, true);
+        System.out.println("📄 Procesamiento Word: " + concurrencia + " a la vez (presupuesto " + presupuesto
+                + " MB, " + costoMb + " MB por documento), cola de " + this.maxEnCola);
+    }
+
+    // Corre el trabajo en el hilo que llama, una vez que consigue cupo. Así la edición queda dentro de la misma
+    // transacción y del mismo contexto de request (empleado logueado) que el resto del servicio.
+    public <T> T ejecutar(String etiqueta, Supplier<T> trabajo) {
+        if (!cupos.tryAcquire()) {
+            esperarCupo(etiqueta);
+        }
+        try {
+            return trabajo.get();
+        } finally {
+            cupos.release();
+            procesados.incrementAndGet();
+        }
+    }
+
+    public void ejecutar(String etiqueta, Runnable trabajo) {
+        ejecutar(etiqueta, () -> {
+            trabajo.run();
+            return null;
+        });
+    }
+
+    private void esperarCupo(String etiqueta) {
+        if (enCola.incrementAndGet() > maxEnCola) {
+            enCola.decrementAndGet();
+            throw rechazar(etiqueta, "cola llena");
+        }
+        try {
+            if (!cupos.tryAcquire(esperaMs, TimeUnit.MILLISECONDS)) {
+                throw rechazar(etiqueta, "sin cupo tras " + esperaMs + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw rechazar(etiqueta, "espera interrumpida");
+        } finally {
+            enCola.decrementAndGet();
+        }
+    }
+
+    private ProcesamientoSaturadoException rechazar(String etiqueta, String motivo) {
+        rechazados.incrementAndGet();
+        System.err.println("⛔ Procesamiento Word saturado (" + motivo + "), se rechaza " + etiqueta);
+        // Sugerencia de reintento: lo que tarda en vaciarse la cola actual, al menos un segundo
+        long segundos = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(esperaMs) * (enCola.get() + 1) / concurrencia);
+        return new ProcesamientoSaturadoException("El servidor está procesando demasiados documentos, intente nuevamente", segundos);
+    }
+
+    public Map<String, Object> estado() {
+        Map<String, Object> estado = new LinkedHashMap<>();
+        estado.put("concurrencia", concurrencia);
+        estado.put("enProceso", concurrencia - cupos.availablePermits());
+        estado.put("enCola", enCola.get());
+        estado.put("maxEnCola", maxEnCola);
+        estado.put("procesados", procesados.get());
+        estado.put("rechazados", rechazados.get());
+        return estado;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.sistema_web.word;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+// Pool acotado para generar muchos documentos de una sola vez (p. ej. oficios masivos). Cada ítem pasa además por
+// ProcesadorDocumentos, de modo que una tanda grande comparte el mismo presupuesto de memoria que las ediciones
+// sueltas en vez de sumarse encima.
+@Component
+public class RenderParalelo {
+
+    // valor != null si salió bien; si no, error trae el motivo
+    public record Resultado<R>(R valor, String error) {
+        public boolean ok() {
+            return error == null;
+        }
+    }
+
+    private final ProcesadorDocumentos procesadorDocumentos;
+    private final ExecutorService workers;
+
+    public RenderParalelo(ProcesadorDocumentos procesadorDocumentos,
+                          @Value("${word.masivo.hilos:4}") int hilos) {
+        this.procesadorDocumentos = procesadorDocumentos;
+        AtomicInteger contador = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, hilos), r -> {
+            Thread t = new Thread(r, "word-masivo-" + contador.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // Resultados en el mismo orden que los ítems; un ítem que falla no detiene a los demás
+    public <T, R> List<Resultado<R>> procesar(String etiqueta, List<T> items, Function<T, R> trabajo) {
+        List<Future<R>> futuros = new ArrayList<>(items.size());
+        for (T item : items) {
+            futuros.add(workers.submit(() -> procesadorDocumentos.ejecutar(etiqueta, () -> trabajo.apply(item))));
+        }
+
+        List<Resultado<R>> resultados = new ArrayList<>(items.size());
+        for (Future<R> futuro : futuros) {
+            try {
+                resultados.add(new Resultado<>(futuro.get(), null));
+            } catch (ExecutionException e) {
+                Throwable causa = e.getCause() != null ? e.getCause() : e;
+                resultados.add(new Resultado<>(null, causa.getMessage() != null ? causa.getMessage() : causa.toString()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futuros.forEach(f -> f.cancel(true));
+                throw new IllegalStateException("Generación masiva interrumpida", e);
+            }
+        }
+        return resultados;
+    }
+
+    @PreDestroy
+    void detener() {
+        workers.shutdownNow();
+    }
+}
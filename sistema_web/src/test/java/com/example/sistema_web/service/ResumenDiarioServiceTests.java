@@ -0,0 +1,172 @@
+package com.example.sistema_web.service;
+
+import com.example.sistema_web.dto.AsignacionDosajeDTO;
+import com.example.sistema_web.dto.AsignacionToxicologiaDTO;
+import com.example.sistema_web.model.Documento;
+import com.example.sistema_web.model.Empleado;
+import com.example.sistema_web.model.ResumenDiario;
+import com.example.sistema_web.model.Usuario;
+import com.example.sistema_web.repository.DocumentoRepository;
+import com.example.sistema_web.repository.EmpleadoRepository;
+import com.example.sistema_web.repository.UsuarioRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// El resumen que se mantiene al guardar tiene que coincidir con el que sale de reconstruirlo desde cero.
+// Corre contra la base configurada y se deshace al terminar.
+@SpringBootTest
+@Transactional
+class ResumenDiarioServiceTests {
+
+	@Autowired
+	private ResumenDiarioService resumenDiarioService;
+	@Autowired
+	private AsignacionDosajeService dosajeService;
+	@Autowired
+	private AsignacionToxicologiaService toxicologiaService;
+	@Autowired
+	private NotificationService notificationService;
+	@Autowired
+	private DocumentoRepository documentoRepository;
+	@Autowired
+	private EmpleadoRepository empleadoRepository;
+	@Autowired
+	private UsuarioRepository usuarioRepository;
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+	@Autowired
+	private EntityManager entityManager;
+
+	@Test
+	void incrementalCoincideConReconstruccion() {
+		resumenDiarioService.reconstruir();
+		long toxicologiaAntes = totalArea(leerResumen(), "TOXICOLOGIA");
+
+		Empleado emisor = empleado("Admin");
+		Empleado perito = empleado("Químico");
+		Documento conFecha = documentoRepository.save(Documento.builder().dni("11111111").build());
+		Documento sinFecha = documentoRepository.save(Documento.builder().dni("22222222").build());
+		entityManager.flush();
+		// Documento antiguo: sin fecha de ingreso
+		jdbcTemplate.update("UPDATE documentos SET fecha_ingreso = NULL WHERE id = ?", sinFecha.getId());
+		siguientePeticion();
+
+		// Dosaje: alta, cambio de área y resultado, baja
+		AsignacionDosajeDTO d1 = dosajeService.crear(dosaje(conFecha, emisor, perito, "Lab A", "Positivo"));
+		AsignacionDosajeDTO d2 = dosajeService.crear(dosaje(sinFecha, emisor, perito, "Lab B", "Negativo"));
+		siguientePeticion();
+		dosajeService.actualizar(d1.getId(), dosaje(conFecha, emisor, perito, "Lab C", "Negativo"));
+		AsignacionDosajeDTO d3 = dosajeService.crear(dosaje(conFecha, emisor, perito, "Lab A", "Positivo"));
+		// Otra escritura del área que usa toxicología ("Toxicología"): es la misma clave
+		dosajeService.crear(dosaje(conFecha, emisor, perito, " TOXICOLOGIA", "Negativo"));
+		siguientePeticion();
+		dosajeService.eliminar(d3.getId());
+
+		// Toxicología: alta, cambio de resultados, baja
+		AsignacionToxicologiaDTO t1 = toxicologiaService.crear(toxicologia(conFecha, emisor, perito, "Positivo", "Negativo"));
+		siguientePeticion();
+		toxicologiaService.actualizar(t1.getId(), toxicologia(conFecha, emisor, perito, "Negativo", "Negativo"));
+		AsignacionToxicologiaDTO t2 = toxicologiaService.crear(toxicologia(sinFecha, emisor, perito, "Positivo", null));
+		toxicologiaService.crear(toxicologia(conFecha, emisor, perito, "POSITIVO", "negativo"));
+		siguientePeticion();
+		toxicologiaService.eliminar(t2.getId());
+
+		// Notificaciones (las asignaciones EN_PROCESO ya crearon otras)
+		notificationService.crearNotificacion("Prueba", "Dosaje", d2.getId(), perito, emisor);
+		entityManager.flush();
+
+		Map<String, Long> incremental = leerResumen();
+		resumenDiarioService.reconstruir();
+		Map<String, Long> reconstruido = leerResumen();
+
+		assertEquals(reconstruido, incremental);
+		// La asignación del documento sin fecha cuenta en el día SIN_FECHA
+		assertTrue(incremental.containsKey(ResumenDiario.TIPO_AREA + "|" + ResumenDiario.SIN_FECHA + "|LAB B"));
+		// "Toxicología" (t1 y la última) y " TOXICOLOGIA" suman en la misma clave
+		assertEquals(toxicologiaAntes + 3, totalArea(incremental, "TOXICOLOGIA"));
+		incremental.keySet().forEach(clave -> {
+			String valor = clave.substring(clave.lastIndexOf('|') + 1);
+			if (!clave.startsWith(ResumenDiario.TIPO_AREA) && !clave.startsWith(ResumenDiario.TIPO_SUSTANCIA)) return;
+			assertEquals(ResumenDiario.normalizar(valor), valor, clave);
+		});
+	}
+
+	private static long totalArea(Map<String, Long> resumen, String area) {
+		return resumen.entrySet().stream()
+				.filter(e -> e.getKey().startsWith(ResumenDiario.TIPO_AREA + "|") && e.getKey().endsWith("|" + area))
+				.mapToLong(Map.Entry::getValue)
+				.sum();
+	}
+
+	// Todo corre en una sola transacción: vaciar el contexto imita que cada llamada llegue en su propia petición
+	private void siguientePeticion() {
+		entityManager.flush();
+		entityManager.clear();
+	}
+
+	private Empleado empleado(String cargo) {
+		String sufijo = UUID.randomUUID().toString().substring(0, 8);
+		Usuario usuario = usuarioRepository.save(Usuario.builder()
+				.nombre("Prueba " + sufijo)
+				.email(sufijo + "@resumen.test")
+				.password("x")
+				.rol("USER")
+				.build());
+		Empleado empleado = new Empleado();
+		empleado.setNombre("Prueba");
+		empleado.setApellido(sufijo);
+		empleado.setDni(sufijo);
+		empleado.setCargo(cargo);
+		empleado.setTelefono("000000000");
+		empleado.setEstado("ACTIVO");
+		empleado.setUsuario(usuario);
+		return empleadoRepository.save(empleado);
+	}
+
+	private static AsignacionDosajeDTO dosaje(Documento documento, Empleado emisor, Empleado perito,
+											  String area, String cualitativo) {
+		AsignacionDosajeDTO dto = new AsignacionDosajeDTO();
+		dto.setArea(area);
+		dto.setCualitativo(cualitativo);
+		dto.setEstado("EN_PROCESO");
+		dto.setDocumentoId(documento.getId());
+		dto.setEmpleadoId(perito.getId());
+		dto.setEmisorId(emisor.getId());
+		return dto;
+	}
+
+	private static AsignacionToxicologiaDTO toxicologia(Documento documento, Empleado emisor, Empleado perito,
+														String marihuana, String cocaina) {
+		AsignacionToxicologiaDTO dto = new AsignacionToxicologiaDTO();
+		dto.setArea("Toxicología");
+		dto.setEstado("EN_PROCESO");
+		dto.setDocumentoId(documento.getId());
+		dto.setEmpleadoId(perito.getId());
+		dto.setEmisorId(emisor.getId());
+		dto.getResultados().setMarihuana(marihuana);
+		dto.getResultados().setCocaina(cocaina);
+		return dto;
+	}
+
+	// (tipo|fecha|clave) → cantidad; las filas en cero que deja el camino incremental no cuentan
+	private Map<String, Long> leerResumen() {
+		Map<String, Long> filas = new HashMap<>();
+		jdbcTemplate.query("SELECT tipo, fecha, clave, cantidad FROM resumen_diario WHERE cantidad <> 0", rs -> {
+			Date fecha = rs.getDate(2);
+			filas.put(rs.getString(1) + "|" + fecha.toLocalDate() + "|" + rs.getString(3), rs.getLong(4));
+		});
+		return filas;
+	}
+}
@@ -0,0 +1,65 @@
+package com.example.sistema_web.word;
+
+import com.example.sistema_web.model.Documento;
+import com.example.sistema_web.repository.DocumentoRepository;
+import com.example.sistema_web.service.ArchivoService;
+import com.example.sistema_web.service.DocumentoService;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.junit.jupiter.api.Test;
+import org.openxmlformats.schemas.wordprocessingml.x2006.main.CTSdtBlock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+// Cada edición deja el .docx con otro hash; la siguiente tiene que encontrar el índice igual.
+@SpringBootTest
+@Transactional
+class IndiceTagsTests {
+
+	@Autowired
+	private IndiceTags indiceTags;
+	@Autowired
+	private DocumentoService documentoService;
+	@Autowired
+	private DocumentoRepository documentoRepository;
+	@Autowired
+	private ArchivoService archivoService;
+
+	@Test
+	void segundaEdicionUsaElIndice() throws IOException {
+		Documento doc = Documento.builder().dni("33333333").build();
+		archivoService.guardar(doc, docxConControl("CUANTITATIVO", "0.00"));
+		doc = documentoRepository.save(doc);
+
+		// Primera edición: el archivo nunca se editó, se recorre y se indexa
+		documentoService.actualizarCamposEnWord(doc.getId(), Map.of("CUANTITATIVO", "1.10"));
+		String hashEditado = documentoRepository.findById(doc.getId()).orElseThrow().getArchivoHash();
+		long aciertos = indiceTags.aciertos();
+		long fallos = indiceTags.fallos();
+
+		// Segunda edición: parte del archivo ya editado
+		documentoService.actualizarCamposEnWord(doc.getId(), Map.of("CUANTITATIVO", "2.20"));
+
+		assertEquals(aciertos + 1, indiceTags.aciertos());
+		assertEquals(fallos, indiceTags.fallos());
+		assertNotEquals(hashEditado, documentoRepository.findById(doc.getId()).orElseThrow().getArchivoHash());
+	}
+
+	private static byte[] docxConControl(String tag, String texto) throws IOException {
+		try (XWPFDocument docx = new XWPFDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+			docx.createParagraph().createRun().setText("Resultado:");
+			CTSdtBlock sdt = docx.getDocument().getBody().addNewSdt();
+			sdt.addNewSdtPr().addNewTag().setVal(tag);
+			sdt.addNewSdtContent().addNewP().addNewR().addNewT().setStringValue(texto);
+			docx.write(out);
+			return out.toByteArray();
+		}
+	}
+}